@@ -101,6 +101,85 @@ public class Globals {
      */
     public boolean useIPSocket = true;
     
+    /*
+     * Command-line switch determines whether updates are passed in memory
+     * to remote scoreboards running in the same process (see
+     * fx2.networking.LoopbackTransport), rather than over the network.
+     */
+    public boolean useLoopback = false;
+    
+    /*
+     * Command-line flag used to specify the number of remote scoreboards
+     * MainLoopback runs alongside its master.
+     */
+    public int loopbackRemotes = 1;
+    
+    /*
+     * Command-line switch determines whether updates are sent as compact
+     * binary frames (see fx2.framework.BinarySpec) rather than XML.  Remote
+     * scoreboards accept either, so this only needs to be set on the master.
+     */
+    public boolean useBinaryUpdates = false;
+    
+    /*
+     * Command-line switch determines whether the XML updates collected
+     * during a pulse are shipped together in a <root> element, or each in
+     * a message of its own.  Older remote scoreboards only read the first
+     * <update> of an XML message, so this is off unless every remote is
+     * known to be recent.  Binary frames, which only recent remote
+     * scoreboards read, are always batched.
+     */
+    public boolean batchUpdates = false;
+    
+    /*
+     * Command-line switch determines whether a master using IP sockets
+     * serves its remote scoreboards with the built-in non-blocking
+     * server (see fx2.networking.FxSelectorSocketWriter), rather than the
+     * socket library's MultipleSocketWriter.
+     */
+    public boolean useSelectorServer = false;
+    
+    /*
+     * Command-line flag used to specify the port of the master's web
+     * gateway (see fx2.networking.FxWebGateway), 0 if disabled.
+     */
+    public int webPort = 0;
+    
+    /*
+     * Command-line flag used to specify the memory-mapped file through
+     * which the master shares its state with remote scoreboards on the same
+     * host (see fx2.framework.SharedStateTable), null if disabled.
+     */
+    public String sharedStateFile;
+    
+    /*
+     * Command-line flag used to specify the file in which the master
+     * journals its state changes (see fx2.framework.GameJournal), null if
+     * disabled.
+     */
+    public String journalFile;
+    
+    /*
+     * Command-line switch determines whether the master restores the
+     * state recorded in its journal on startup, rather than starting a
+     * new one.
+     */
+    public boolean recoverJournal = false;
+    
+    /*
+     * Command-line flag used to specify the port a relay (see
+     * fx2.MainRelay and fx2.MainWaterpoloRelay) serves its remote
+     * scoreboards on.
+     */
+    public int relayPort = 2011;
+    
+    /*
+     * Command-line switch determines whether networking connection loops
+     * run on virtual threads, when the JDK supports them (see
+     * fx2.networking.NetworkThreads).
+     */
+    public boolean useVirtualThreads = true;
+    
     /*
      * Closed staus flag for simpleIPSocket, updated as status changes
      */
@@ -134,6 +213,27 @@ public class Globals {
      */
     public boolean displaySocket = false;
     
+    /*
+     * Command-line flag used to specify the interval (milliseconds) at
+     * which the master pings its remote scoreboards, 0 to disable.  Only
+     * used with -SocketServer:selector.
+     */
+    public int heartbeatInterval = 2000;
+    
+    /*
+     * Command-line switch determines whether the master's status row shows
+     * the round-trip latency of its remote scoreboards.
+     */
+    public boolean statusRowLatency = false;
+    
+    /*
+     * Command-line flag used to specify how far ahead (milliseconds) the
+     * master schedules the horn, so that remote scoreboards receive it in
+     * time to sound it together with the master.  0 sounds it right away.
+     * Only used with -SocketServer:selector.
+     */
+    public int hornLead = 100;
+    
     /*
      * Command-line flag used to specify a port number.
      */
@@ -175,6 +275,8 @@ public class Globals {
      */
     private final String[] helpMsg = {
         "Command-line options:\n",
+        "  -BatchUpdates:[true or false] (default false)",
+        "\t\tSend the XML updates made during a pulse in a single message",
         "  -configURL:URL (default: /scoreboard/config/config.xml in Scoreboard.jar)",
         "\t\tURL pointing to XML file describing remote client configuration",
         "  -debug:value ",
@@ -185,28 +287,54 @@ public class Globals {
         "\t\tShow socket connection info at bottom of scoreboard display",
         "  -DumpConfig:[true or false] (default false)",
         "\t\tDump layout of scoreboard in XML (for client customization)",
+        "  -Heartbeat:MILLISECONDS (default 2000)",
+        "\t\tInterval at which remote scoreboards are pinged, 0 to disable",
         "  -help or --help",
         "\t\tPrint this screen for command-line argument options and exit",
+        "  -HornLead:MILLISECONDS (default 100)",
+        "\t\tDelay before the horn sounds everywhere at once, 0 to disable",
         "  -hornURL:URL (default: /scoreboard/util/sounds/BUZZER.mp3 in Scoreboard.jar)",
         "\t\tURL pointer to alternate media file representing horn sound",
         "  -host:IP_ADDRESS (default: localhost)",
         "\t\tSpecify IP Address of socket",
+        "  -Journal:PATH (default: disabled)",
+        "\t\tRecord every state change in a file, to recover from a crash",
+        "  -LoopbackRemotes:NUMBER (default 1)",
+        "\t\tNumber of remote scoreboards MainLoopback runs with its master",
         "  -master (default)",
         "\t\tRun as a scoreboard controller (server)",
         "  -MulticastAddr:IP_ADDRESS (default: 227.27.27.27)",
         "\t\tUse multicast socket and specify its IP address",
         "  -port:PORT_NUMBER (default 2011)",
         "\t\tSpecify port for socket connection",
+        "  -RecoverJournal",
+        "\t\tRestore the state recorded in the -Journal file on startup",
+        "  -RelayPort:PORT_NUMBER (default 2011)",
+        "\t\tPort a relay serves its remote scoreboards on",
+        "  -SharedStateFile:PATH (default: disabled)",
+        "\t\tShare scoreboard state with remote scoreboards on the same host",
         "  -slave\t\t",
         "\t\tRun as a remote scoreboard client",
+        "  -SocketServer:[library or selector] (default library)",
+        "\t\tServe IP socket remote scoreboards with a single selector thread",
+        "  -StatusRow:[connections or latency] (default connections)",
+        "\t\tShow remote scoreboard latency in the status row",
         "  -tv",
         "\t\tRun in full screen mode for a TV (with padding for overscan)",
         "  -unlitOpacity:[0-100] (default 10)",
         "\t\tChange opacity of unlit scoreboard bulbs",
+        "  -UpdateProtocol:[xml or binary] (default xml)",
+        "\t\tFormat of the updates sent by the master to remote scoreboards",
         "  -UseIPSocket (default)",
         "\t\tUse IP sockets (with defaults) for scoreboard updates",
+        "  -UseLoopback",
+        "\t\tPass scoreboard updates in memory, within a single process",
         "  -UseMulticastSocket",
         "\t\tUse multicast sockets (with defaults) for scoreboard updates",
+        "  -VirtualThreads:[true or false] (default true)",
+        "\t\tRun socket connections on virtual threads, if the JDK has them",
+        "  -WebPort:PORT_NUMBER (default: disabled)",
+        "\t\tServe web browser remote scoreboards on this HTTP port",
         ""
     };
     
@@ -284,6 +412,22 @@ public class Globals {
                             }
                         }
                     }   break;
+                case "-Heartbeat":
+                    if (subarg.length > 1) {
+                        heartbeatInterval = Integer.parseInt(subarg[1]);
+                    }   break;
+                case "-HornLead":
+                    if (subarg.length > 1) {
+                        hornLead = Integer.parseInt(subarg[1]);
+                    }   break;
+                case "-StatusRow":
+                    if (subarg.length > 1) {
+                        if (subarg[1].equalsIgnoreCase("latency")) {
+                            statusRowLatency = true;
+                        } else if (subarg[1].equalsIgnoreCase("connections")) {
+                            statusRowLatency = false;
+                        }
+                    }   break;
                 case "-host":
                     if (subarg.length > 1) {
                         try {
@@ -321,8 +465,20 @@ public class Globals {
                 case "-UseMulticastSocket":
                     useIPSocket = false;
                     break;
+                case "-UseLoopback":
+                    useLoopback = true;
+                    break;
+                case "-RecoverJournal":
+                    recoverJournal = true;
+                    break;
+                case "-LoopbackRemotes":
+                    if (subarg.length > 1) {
+                        loopbackRemotes = Integer.parseInt(subarg[1]);
+                    }   break;
                 case "-configURL":
                 case "-hornURL":
+                case "-SharedStateFile":
+                case "-Journal":
                     /*
                     * A little bit of kludgery here, the original separator chosen
                     * for command-line arguments was ":", which happens to
@@ -338,8 +494,12 @@ public class Globals {
                         }
                         if (subarg[0].equals("-configURL")) {
                             configURL = sb.toString();
-                        } else {
+                        } else if (subarg[0].equals("-hornURL")) {
                             hornURL = sb.toString();
+                        } else if (subarg[0].equals("-SharedStateFile")) {
+                            sharedStateFile = sb.toString();
+                        } else {
+                            journalFile = sb.toString();
                         }
                     }   break;
                 case "-unlitOpacity":
@@ -351,6 +511,46 @@ public class Globals {
                                     unlitOpacity);
                         }
                     }   break;
+                case "-UpdateProtocol":
+                    if (subarg.length > 1) {
+                        if (subarg[1].equalsIgnoreCase("binary")) {
+                            useBinaryUpdates = true;
+                        } else if (subarg[1].equalsIgnoreCase("xml")) {
+                            useBinaryUpdates = false;
+                        }
+                    }   break;
+                case "-RelayPort":
+                    if (subarg.length > 1) {
+                        relayPort = Integer.parseInt(subarg[1]);
+                    }   break;
+                case "-VirtualThreads":
+                    if (subarg.length > 1) {
+                        if (subarg[1].equals("true")) {
+                            useVirtualThreads = true;
+                        } else if (subarg[1].equals("false")) {
+                            useVirtualThreads = false;
+                        }
+                    }   break;
+                case "-WebPort":
+                    if (subarg.length > 1) {
+                        webPort = Integer.parseInt(subarg[1]);
+                    }   break;
+                case "-SocketServer":
+                    if (subarg.length > 1) {
+                        if (subarg[1].equalsIgnoreCase("selector")) {
+                            useSelectorServer = true;
+                        } else if (subarg[1].equalsIgnoreCase("library")) {
+                            useSelectorServer = false;
+                        }
+                    }   break;
+                case "-BatchUpdates":
+                    if (subarg.length > 1) {
+                        if (subarg[1].equals("true")) {
+                            batchUpdates = true;
+                        } else if (subarg[1].equals("false")) {
+                            batchUpdates = false;
+                        }
+                    }   break;
                 case "-DisableHorn":
                     if (subarg.length > 1) {
                         if (subarg[1].equals("true")) {
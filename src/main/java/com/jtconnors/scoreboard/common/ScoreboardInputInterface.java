@@ -49,5 +49,24 @@ public interface ScoreboardInputInterface {
 
     public void updateVariable(String name, String overallValueStr);
 
+    public void updateVariable(String name, int overallValue);
+
+    /*
+     * id is the update variable ID as defined by
+     * XMLSpec.getUpdateVariableId()
+     */
+    public void updateVariableById(int id, int overallValue);
+
+    /*
+     * Called for binary clock run (running is true) and clock stop frames
+     */
+    public void updateClockById(int id, int overallValue, boolean running);
+
+    /*
+     * Called for binary horn frames, masterTime being the time on the
+     * master's clock at which the update takes effect
+     */
+    public void updateVariableAt(int id, int overallValue, long masterTime);
+
     public void resolveXlocations();
 }
@@ -32,5 +32,22 @@
 package com.jtconnors.scoreboard.common;
 
 public interface XMLReaderInterface {
+    /*
+     * Reads an update message.  Updates to scoreboard state may be held
+     * back, and coalesced with later ones, until flushUpdates() is called.
+     */
     public void handleUpdate(String msg);
+
+    /*
+     * Reads a single update of the variable with the given update variable
+     * ID, from a source which needs no parsing, like a shared state table.
+     * masterTime is the time on the master's clock at which an event takes
+     * effect, or 0 for right away.  Held back like handleUpdate()'s.
+     */
+    public void handleUpdate(int id, int overallValue, long masterTime);
+
+    /*
+     * Applies the updates held back by handleUpdate()
+     */
+    public void flushUpdates();
 }
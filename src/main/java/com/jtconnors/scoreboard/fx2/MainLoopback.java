@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2;
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+import com.jtconnors.scoreboard.fx2.impl.led.LEDHockeyScoreboard;
+import com.jtconnors.scoreboard.common.Globals;
+
+/*
+ * Runs a master and -LoopbackRemotes remote scoreboards in a single
+ * process, each in its own window, with the updates passed in memory
+ * (see fx2.networking.LoopbackTransport) rather than over the network.
+ * Useful to drive several screens from one PC, and to load the update
+ * path without a network.
+ */
+public class MainLoopback extends Application {
+
+    @Override
+    public void start(Stage stage) {
+        LEDHockeyScoreboard master = new LEDHockeyScoreboard(711, 400, false);
+        Globals.instance().hockeyScoreboardRef = master;
+        show(stage, master, "Master");
+        for (int i = 1; i <= Globals.instance().loopbackRemotes; i++) {
+            show(new Stage(), new LEDHockeyScoreboard(711, 400, true),
+                    "Remote " + i);
+        }
+    }
+
+    private void show(Stage stage, LEDHockeyScoreboard scoreboard,
+            String title) {
+        Group group = new Group();
+        group.getChildren().add(scoreboard);
+        Scene scene = new Scene(group, group.getLayoutBounds().getWidth(),
+                group.getLayoutBounds().getHeight());
+        stage.setTitle(title);
+        stage.setScene(scene);
+        stage.setOnCloseRequest((WindowEvent event) -> {
+            Platform.exit();
+            System.exit(0);
+        });
+        stage.show();
+    }
+
+    public static void main(String[] args) {
+        Globals.instance().parseArgs(args);
+        Globals.instance().useLoopback = true;
+        Application.launch(MainLoopback.class, args);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jtconnors.scoreboard.fx2;
+
+import com.jtconnors.scoreboard.common.Globals;
+import com.jtconnors.scoreboard.fx2.framework.hockey.HockeyScoreboardXMLSpec;
+import com.jtconnors.scoreboard.fx2.networking.SocketRelay;
+
+/*
+ * Headless relay: connects to the master (-host, -port) and re-serves its
+ * updates to remote scoreboards on -RelayPort.  No Stage is created, so it
+ * can run on any machine with a JVM, and relays can be chained to build a
+ * fan-out tree.  MainRelay relays a hockey scoreboard, MainWaterpoloRelay a
+ * waterpolo scoreboard.
+ */
+public class MainRelay {
+
+    public static void main(String[] args) {
+        Globals.instance().parseArgs(args);
+        /*
+         * Needed to read the variable names of XML updates
+         */
+        HockeyScoreboardXMLSpec.init();
+        run();
+    }
+
+    /*
+     * Runs the relay until it is shut down, once the XML spec of the
+     * relayed scoreboard has been initialized.
+     */
+    static void run() {
+        SocketRelay relay = new SocketRelay(Globals.instance().host,
+                Globals.instance().port, Globals.instance().relayPort,
+                Globals.instance().debugFlags);
+        Runtime.getRuntime().addShutdownHook(new Thread(relay::shutdown));
+        relay.start();
+        try {
+            relay.join();
+        } catch (InterruptedException e) {
+            relay.shutdown();
+        }
+    }
+}
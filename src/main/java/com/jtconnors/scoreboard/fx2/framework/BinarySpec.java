@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.framework;
+
+/*
+ * This class contains the constants, rules and methods used to construct
+ * and read the compact binary update frames sent to remote scoreboard
+ * instances.  It is the binary counterpart of the <update> element found
+ * in XMLSpec, and is selected on the master with the
+ * -UpdateProtocol:binary command-line switch.  Remote scoreboards
+ * recognize either format on a per message basis, so XML remains the
+ * fallback for older clients.
+ *
+ * A frame is made up of a fixed header followed by one or more records:
+ *
+ *     header:  version (1 byte), type (1 byte), sequence number (4 bytes)
+ *     record:  variable ID (2 bytes), overallValue (4 bytes)
+ *
+ * An update frame carries the variables that changed, a snapshot frame
+ * carries the full state of the scoreboard.  Clock run and clock stop
+ * frames carry a single clock record and tell receivers that the clock is
+ * running down from, or stopped at, that value.  Ping and pong frames
+ * carry a timestamp instead of records: a remote answers each ping with a
+ * pong holding the same timestamp, from which the master measures the
+ * round-trip time.  Pings are not part of the update stream, their
+ * sequence number is always 0.  Neither are subscribe frames, which a
+ * remote sends to name the variables it renders: their records hold the
+ * variable IDs, with a value of 0.
+ *
+ * Time request and time reply frames let a remote estimate the offset
+ * between its clock and the master's (see TimeSync).  A time request
+ * holds the remote's time, which the master sends back in a time reply
+ * along with its own.  A horn frame holds a single horn record followed
+ * by the master time at which it must sound, so that every scoreboard
+ * sounds it at the same moment.  It is part of the update stream.
+ *
+ * The sequence number is assigned by the sender (see UpdateBatcher) and
+ * is shared by all the update stream frame types, allowing receivers to
+ * detect lost frames.
+ *
+ * The variable ID is the index of the variable name in
+ * XMLSpec.UpdateVariableNames, so both ends must share the same XMLSpec
+ * implementation.  The underlying sockets are line oriented, so each byte
+ * is carried as two hexadecimal characters, and the frame is prefixed with
+ * FRAME_MARKER to tell it apart from an XML message.
+ */
+public abstract class BinarySpec {
+
+    public final static char FRAME_MARKER = '#';
+    public final static int PROTOCOL_VERSION = 1;
+
+    /*
+     * Frame types
+     */
+    public final static int TYPE_UPDATE = 0;
+    public final static int TYPE_SNAPSHOT = 1;
+    public final static int TYPE_CLOCK_RUN = 2;
+    public final static int TYPE_CLOCK_STOP = 3;
+    public final static int TYPE_PING = 4;
+    public final static int TYPE_PONG = 5;
+    public final static int TYPE_SUBSCRIBE = 6;
+    public final static int TYPE_TIME_REQUEST = 7;
+    public final static int TYPE_TIME_REPLY = 8;
+    public final static int TYPE_HORN_AT = 9;
+
+    /*
+     * Sizes, in hexadecimal characters, of the frame components
+     */
+    public final static int VERSION_CHARS = 2;
+    public final static int TYPE_CHARS = 2;
+    public final static int SEQUENCE_CHARS = 8;
+    public final static int ID_CHARS = 4;
+    public final static int VALUE_CHARS = 8;
+    public final static int HEADER_CHARS =
+            1 + VERSION_CHARS + TYPE_CHARS + SEQUENCE_CHARS;
+    public final static int RECORD_CHARS = ID_CHARS + VALUE_CHARS;
+    public final static int TIMESTAMP_CHARS = 16;
+
+    private final static char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /*
+     * Reusable encoding buffer, grown as needed to hold the largest
+     * frame built so far.  Frames are built on the JavaFX application
+     * thread only, so no synchronization is required.
+     */
+    private static char[] frameBuf = new char[HEADER_CHARS + RECORD_CHARS];
+
+    /**
+     * Writes value into buf as nDigits hexadecimal characters
+     */
+    private static void putHex(char[] buf, int pos, int value, int nDigits) {
+        for (int i = nDigits - 1; i >= 0; i--) {
+            buf[pos + i] = HEX_DIGITS[value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * Reads nDigits hexadecimal characters from msg starting at pos
+     */
+    private static int getHex(String msg, int pos, int nDigits) {
+        int value = 0;
+        for (int i = pos; i < pos + nDigits; i++) {
+            int digit = Character.digit(msg.charAt(i), 16);
+            if (digit < 0) {
+                throw new NumberFormatException(
+                        "Bad hex digit in update frame: " + msg);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static long getHexLong(String msg, int pos, int nDigits) {
+        return ((long) getHex(msg, pos, nDigits - 8) << 32) |
+                (getHex(msg, pos + nDigits - 8, 8) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes the frame header into buf and returns the position of the
+     * first record.
+     */
+    private static int putHeader(char[] buf, int type, int sequence) {
+        int pos = 0;
+        buf[pos++] = FRAME_MARKER;
+        putHex(buf, pos, PROTOCOL_VERSION, VERSION_CHARS);
+        pos += VERSION_CHARS;
+        putHex(buf, pos, type, TYPE_CHARS);
+        pos += TYPE_CHARS;
+        putHex(buf, pos, sequence, SEQUENCE_CHARS);
+        pos += SEQUENCE_CHARS;
+        return pos;
+    }
+
+    private static int putTimestamp(char[] buf, int pos, long timestamp) {
+        putHex(buf, pos, (int) (timestamp >>> 32), 8);
+        putHex(buf, pos + 8, (int) timestamp, 8);
+        return pos + TIMESTAMP_CHARS;
+    }
+
+    /**
+     * Writes a single (id, value) record into buf at pos and returns the
+     * position following the record.
+     */
+    private static int putRecord(char[] buf, int pos, int id, int value) {
+        putHex(buf, pos, id, ID_CHARS);
+        pos += ID_CHARS;
+        putHex(buf, pos, value, VALUE_CHARS);
+        return pos + VALUE_CHARS;
+    }
+
+    /**
+     * Creates an update frame for a single variable.  This is the binary
+     * equivalent of XMLSpec.updateStr().
+     */
+    public static String updateStr(int sequence, int id, int overallValue) {
+        int pos = putHeader(frameBuf, TYPE_UPDATE, sequence);
+        pos = putRecord(frameBuf, pos, id, overallValue);
+        return new String(frameBuf, 0, pos);
+    }
+
+    /**
+     * Creates a frame of the given type holding count variables, taken
+     * from the first count entries of the ids and overallValues arrays.
+     */
+    public static String frameStr(int type, int sequence, int[] ids,
+            int[] overallValues, int count) {
+        int frameLength = HEADER_CHARS + (count * RECORD_CHARS);
+        if (frameBuf.length < frameLength) {
+            frameBuf = new char[frameLength];
+        }
+        int pos = putHeader(frameBuf, type, sequence);
+        for (int i = 0; i < count; i++) {
+            pos = putRecord(frameBuf, pos, ids[i], overallValues[i]);
+        }
+        return new String(frameBuf, 0, pos);
+    }
+
+    /**
+     * Creates a ping (type TYPE_PING), pong (type TYPE_PONG) or time
+     * request (type TYPE_TIME_REQUEST) frame.  Unlike the update frames,
+     * these may be built on any thread.
+     */
+    public static String heartbeatStr(int type, long timestamp) {
+        char[] buf = new char[HEADER_CHARS + TIMESTAMP_CHARS];
+        int pos = putHeader(buf, type, 0);
+        putTimestamp(buf, pos, timestamp);
+        return new String(buf);
+    }
+
+    /**
+     * Creates a time reply frame, answering a time request holding
+     * requestTime at the master's replyTime.  May be built on any thread.
+     */
+    public static String timeReplyStr(long requestTime, long replyTime) {
+        char[] buf = new char[HEADER_CHARS + (2 * TIMESTAMP_CHARS)];
+        int pos = putHeader(buf, TYPE_TIME_REPLY, 0);
+        pos = putTimestamp(buf, pos, requestTime);
+        putTimestamp(buf, pos, replyTime);
+        return new String(buf);
+    }
+
+    /**
+     * Creates a horn frame, telling receivers to set variable id to
+     * overallValue at the master's time masterTime.
+     */
+    public static String hornAtStr(int sequence, int id, int overallValue,
+            long masterTime) {
+        char[] buf = new char[HEADER_CHARS + RECORD_CHARS + TIMESTAMP_CHARS];
+        int pos = putHeader(buf, TYPE_HORN_AT, sequence);
+        pos = putRecord(buf, pos, id, overallValue);
+        putTimestamp(buf, pos, masterTime);
+        return new String(buf);
+    }
+
+    /**
+     * Creates a subscribe frame naming the first count variable IDs of
+     * ids.  May be built on any thread.
+     */
+    public static String subscribeStr(int[] ids, int count) {
+        char[] buf = new char[HEADER_CHARS + (count * RECORD_CHARS)];
+        int pos = putHeader(buf, TYPE_SUBSCRIBE, 0);
+        for (int i = 0; i < count; i++) {
+            pos = putRecord(buf, pos, ids[i], 0);
+        }
+        return new String(buf);
+    }
+
+    /**
+     * Determines if msg is a well formed frame of the given heartbeat type
+     */
+    public static boolean isHeartbeat(String msg, int type) {
+        return isFrame(msg, type, HEADER_CHARS + TIMESTAMP_CHARS);
+    }
+
+    public static boolean isTimeReply(String msg) {
+        return isFrame(msg, TYPE_TIME_REPLY,
+                HEADER_CHARS + (2 * TIMESTAMP_CHARS));
+    }
+
+    public static boolean isHornAt(String msg) {
+        return isFrame(msg, TYPE_HORN_AT,
+                HEADER_CHARS + RECORD_CHARS + TIMESTAMP_CHARS);
+    }
+
+    private static boolean isFrame(String msg, int type, int length) {
+        try {
+            return isFrame(msg) && msg.length() == length &&
+                    getType(msg) == type;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the timestamp of a ping, pong or time request frame, or the
+     * request time of a time reply frame.
+     */
+    public static long getTimestamp(String msg) {
+        return getHexLong(msg, HEADER_CHARS, TIMESTAMP_CHARS);
+    }
+
+    /**
+     * Returns the master's time of a time reply frame
+     */
+    public static long getReplyTimestamp(String msg) {
+        return getHexLong(msg, HEADER_CHARS + TIMESTAMP_CHARS,
+                TIMESTAMP_CHARS);
+    }
+
+    /**
+     * Returns the master time at which a horn frame must be acted upon
+     */
+    public static long getHornTimestamp(String msg) {
+        return getHexLong(msg, HEADER_CHARS + RECORD_CHARS, TIMESTAMP_CHARS);
+    }
+
+    /**
+     * Determines if msg is a binary update frame (as opposed to XML)
+     */
+    public static boolean isFrame(String msg) {
+        return msg != null && msg.length() >= HEADER_CHARS &&
+                msg.charAt(0) == FRAME_MARKER;
+    }
+
+    public static int getVersion(String msg) {
+        return getHex(msg, 1, VERSION_CHARS);
+    }
+
+    public static int getType(String msg) {
+        return getHex(msg, 1 + VERSION_CHARS, TYPE_CHARS);
+    }
+
+    public static int getSequence(String msg) {
+        return getHex(msg, 1 + VERSION_CHARS + TYPE_CHARS, SEQUENCE_CHARS);
+    }
+
+    /**
+     * Returns a copy of the frame msg with the given sequence number
+     */
+    public static String withSequence(String msg, int sequence) {
+        char[] buf = msg.toCharArray();
+        putHex(buf, 1 + VERSION_CHARS + TYPE_CHARS, sequence, SEQUENCE_CHARS);
+        return new String(buf);
+    }
+
+    /**
+     * Returns the number of (id, value) records contained in the frame
+     */
+    public static int getRecordCount(String msg) {
+        return (msg.length() - HEADER_CHARS) / RECORD_CHARS;
+    }
+
+    public static int getRecordId(String msg, int record) {
+        return getHex(msg, HEADER_CHARS + (record * RECORD_CHARS), ID_CHARS);
+    }
+
+    public static int getRecordValue(String msg, int record) {
+        return getHex(msg, HEADER_CHARS + (record * RECORD_CHARS) + ID_CHARS,
+                VALUE_CHARS);
+    }
+}
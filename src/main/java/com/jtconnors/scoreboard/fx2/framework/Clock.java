@@ -32,6 +32,8 @@
 package com.jtconnors.scoreboard.fx2.framework;
 
 import com.jtconnors.scoreboard.common.Globals;
+import javafx.animation.Animation;
+import javafx.beans.Observable;
 import javafx.scene.Group;
 import javafx.scene.shape.Circle;
 import javafx.scene.input.KeyCode;
@@ -93,6 +95,40 @@ public abstract class Clock extends DisplayableWithDigits {
         return timer;
     }
 
+    /*
+     * The running clock value is derived from the timer's TimeBase: it is
+     * anchorValue less the number of tenths elapsed since anchorTenths.
+     * Any change not made by the timer handler moves the anchor.
+     */
+    private int anchorValue;
+    private long anchorTenths;
+    private boolean updatingFromTimer = false;
+
+    /*
+     * With binary updates, a running clock is not sent every tick.  The
+     * master sends a clock run frame when the clock starts, a correction
+     * every CLOCK_CORRECTION_INTERVAL and a clock stop frame when it
+     * stops.  lastRunTenths is the time of the last run frame sent.
+     */
+    private long lastRunTenths;
+
+    /*
+     * On a remote scoreboard, this Timer extrapolates the clock locally
+     * between clock run frames (see setRunningViaUpdate()).
+     */
+    private Timer extrapolationTimer;
+
+    /*
+     * The Timer whose TimeBase the clock value is anchored to
+     */
+    private Timer getAnchorTimer() {
+        return timer != null ? timer : extrapolationTimer;
+    }
+
+    private boolean sendsClockRuns() {
+        return timer != null && Globals.instance().useBinaryUpdates;
+    }
+
     /*
      * Depending on how much time is left, either of these two things
      * will be displayed.  During normal operation of the clock,
@@ -209,8 +245,64 @@ public abstract class Clock extends DisplayableWithDigits {
 
     @Override
     protected void refreshOnOverallValueChange(int overallValue) {
+        if (!updatingFromTimer && getAnchorTimer() != null) {
+            anchorValue = overallValue;
+            anchorTenths = getAnchorTimer().getTimeBase().getElapsedTenths();
+        }
         setDigits();
-        sendMessageToSocket(varName, String.valueOf(overallValue));
+        if (updatingFromTimer && sendsClockRuns()) {
+            UpdateBatcher.instance().record(
+                    XMLSpec.getUpdateVariableId(varName), overallValue);
+        } else {
+            sendMessageToSocket(varName, overallValue);
+        }
+    }
+
+    /*
+     * Sends a clock run frame from the current value, or a clock stop frame
+     */
+    private void sendClock(boolean running) {
+        lastRunTenths = timer.getTimeBase().getElapsedTenths();
+        UpdateBatcher.instance().postClock(
+                XMLSpec.getUpdateVariableId(varName), getOverallValue(),
+                running);
+    }
+
+    /**
+     * Called on a remote scoreboard on receipt of a clock run frame
+     * (running is true) or a clock stop frame.  While running, the clock
+     * counts down locally from overallValue until the next frame.
+     */
+    public void setRunningViaUpdate(int overallValue, boolean running) {
+        if (extrapolationTimer == null) {
+            extrapolationTimer = new Timer();
+            extrapolationTimer.addHandler(() -> {
+                long elapsed =
+                        extrapolationTimer.getTimeBase().getElapsedTenths()
+                        - anchorTenths;
+                int value = (int) Math.max(0, anchorValue - elapsed);
+                if (value != getOverallValue()) {
+                    updatingFromTimer = true;
+                    setOverallValue(value);
+                    updatingFromTimer = false;
+                }
+                if (value == 0) {
+                    extrapolationTimer.stop();
+                }
+            });
+        }
+        if (running) {
+            extrapolationTimer.start();
+            anchorValue = overallValue;
+            anchorTenths =
+                    extrapolationTimer.getTimeBase().getElapsedTenths();
+            updatingFromTimer = true;
+            setOverallValue(overallValue);
+            updatingFromTimer = false;
+        } else {
+            extrapolationTimer.stop();
+            setOverallValue(overallValue);
+        }
     }
 
     /*
@@ -624,8 +716,20 @@ public abstract class Clock extends DisplayableWithDigits {
             @Override
             public void invoke() {
                 if (getOverallValue() > 0) {
-                    setOverallValue(getOverallValue()-1);
-                } else {
+                    long now = getTimer().getTimeBase().getElapsedTenths();
+                    int value = (int) Math.max(0,
+                            anchorValue - (now - anchorTenths));
+                    if (value != getOverallValue()) {
+                        updatingFromTimer = true;
+                        setOverallValue(value);
+                        updatingFromTimer = false;
+                    }
+                    if (value > 0 && sendsClockRuns() && now - lastRunTenths
+                            >= FxConstants.instance().CLOCK_CORRECTION_INTERVAL) {
+                        sendClock(true);
+                    }
+                }
+                if (getOverallValue() == 0) {
                     getTimer().stop();
                     if (Globals.instance().useHorn && 
                             scoreboardWithClock != null) {
@@ -636,6 +740,17 @@ public abstract class Clock extends DisplayableWithDigits {
         };
         if (timer != null) {
             getTimer().addHandler(handler);
+            /*
+             * Send clock run and clock stop frames as the Timer starts
+             * and stops.
+             */
+            getTimer().getTimeline().statusProperty().addListener(
+                    (Observable ov) -> {
+                if (sendsClockRuns()) {
+                    sendClock(getTimer().getTimeline().getStatus() ==
+                            Animation.Status.RUNNING);
+                }
+            });
         }
     }
 }
\ No newline at end of file
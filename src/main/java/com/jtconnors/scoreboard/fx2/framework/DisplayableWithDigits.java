@@ -327,7 +327,11 @@ public abstract class DisplayableWithDigits extends Displayable {
      * overriden.
      */
     public void setOverallValueViaUpdate(String overallValueStr) {
-        setOverallValue(Integer.parseInt(overallValueStr));
+        setOverallValueViaUpdate(Integer.parseInt(overallValueStr));
+    }
+
+    public void setOverallValueViaUpdate(int overallValue) {
+        setOverallValue(overallValue);
     }
     
     private int prevOverallValue;
@@ -347,20 +351,45 @@ public abstract class DisplayableWithDigits extends Displayable {
      * want to send update message on to a socket.
      */
     public void sendMessageToSocket(String varName, String valueStr) {
-        String msg = XMLSpec.updateStr(varName, valueStr);
-        if ((Globals.instance().debugFlags & 
-                Constants.instance().DEBUG_XMLOUTPUT) != 0) {
-            LOGGER.info(msg); 
-        }
-        if (Globals.instance().useIPSocket) {
-            if (FxGlobals.instance().multipleSocketWriter != null) {
-                FxGlobals.instance().multipleSocketWriter.postUpdate(msg);
-            }
-        } else {
-            if (FxGlobals.instance().multicastWriter != null) {
-                FxGlobals.instance().multicastWriter.sendMessage(msg);
-            }
+        sendMessageToSocket(varName, Integer.parseInt(valueStr));
+    }
+
+    /*
+     * Sends the current value, as if it had just changed.  Used by the
+     * master to record the initial state of the scoreboard.
+     */
+    public void sendCurrentValue() {
+        sendMessageToSocket(varName, getOverallValue());
+    }
+
+    /*
+     * Updates are not written to the socket right away, but handed to the
+     * UpdateBatcher which ships all of the changes made during the current
+     * pulse together.
+     */
+    public void sendMessageToSocket(String varName, int value) {
+        if (remote) {
+            return;
         }
+        UpdateBatcher.instance().post(XMLSpec.getUpdateVariableId(varName),
+                value);
+    }
+
+    /*
+     * Set on the update variables of a remote scoreboard, whose changes
+     * come from the master and must never be sent back.  The UpdateBatcher
+     * is shared by every scoreboard in the process, so with -UseLoopback a
+     * remote's changes would otherwise be shipped to the other remotes
+     * and recorded as the master's state.
+     */
+    private boolean remote = false;
+
+    public void setRemote(boolean remote) {
+        this.remote = remote;
+    }
+
+    public boolean isRemote() {
+        return remote;
     }
 
     /********************************************************************
@@ -63,6 +63,25 @@ public class FxConstants {
      */
     public final Duration ONE_TENTH_SECOND = Duration.millis(100);
     public final Duration ONE_SECOND = Duration.millis(1000);
+    /*
+     * How often the master sends a snapshot of the full scoreboard state
+     * over multicast.
+     */
+    public final Duration SNAPSHOT_INTERVAL = Duration.millis(2000);
+    /*
+     * How often the master's game journal is forced to disk
+     */
+    public final Duration JOURNAL_SYNC_INTERVAL = Duration.millis(1000);
+    /*
+     * Number of records after which the master's game journal is
+     * compacted behind a checkpoint, around seven minutes of clock ticks.
+     */
+    public final int JOURNAL_CHECKPOINT_RECORDS = 4096;
+    /*
+     * How often, in tenths of seconds of game time, a running clock sends
+     * a correction when clock run frames are in use.
+     */
+    public final int CLOCK_CORRECTION_INTERVAL = 20;
     // 9 minutes 59 seconds in second increments
     public final int MAX_PENALTY_TIME = 599;
     // 99 minutes, 59.9 seconds in tenth of second increments
@@ -30,10 +30,16 @@
  */
 package com.jtconnors.scoreboard.fx2.framework;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import com.jtconnors.scoreboard.fx2.networking.FxMulticastReader;
 import com.jtconnors.scoreboard.fx2.networking.FxMulticastWriter;
 import com.jtconnors.scoreboard.fx2.networking.FxMultipleSocketWriter;
+import com.jtconnors.scoreboard.fx2.networking.FxSelectorSocketWriter;
 import com.jtconnors.scoreboard.fx2.networking.FxSocketReader;
+import com.jtconnors.scoreboard.fx2.networking.FxWebGateway;
+import com.jtconnors.scoreboard.fx2.networking.SharedStateReader;
+import com.jtconnors.scoreboard.fx2.networking.UpdateTransport;
 
 /*
  * Global variables that are JavaFX 2.x specific
@@ -68,8 +74,43 @@ public class FxGlobals {
      */
     public FxMultipleSocketWriter multipleSocketWriter;
     
+    /*
+     * Non-blocking IP socket server to send updates over, used in place
+     * of multipleSocketWriter with -SocketServer:selector
+     */
+    public FxSelectorSocketWriter selectorSocketWriter;
+    
+    /*
+     * HTTP server streaming updates to web browsers, with -WebPort:PORT
+     */
+    public FxWebGateway webGateway;
+    
     /*
      * IP socket to send XML updates over
      */
     public FxSocketReader socketReader;   
+    
+    /*
+     * Memory-mapped state table shared with remote scoreboards on the
+     * same host, with -SharedStateFile:PATH
+     */
+    public SharedStateTable sharedStateTable;
+
+    /*
+     * The master's journal of state changes, with -Journal:PATH
+     */
+    public GameJournal journal;
+
+    /*
+     * Reader of the master's shared state table, on a remote scoreboard
+     */
+    public SharedStateReader sharedStateReader;
+    
+    /*
+     * Transports, other than the socket library's writers above, which
+     * the master's updates are posted to (see UpdateBatcher).  Includes
+     * selectorSocketWriter and webGateway when they are in use.
+     */
+    public final List<UpdateTransport> transports =
+            new CopyOnWriteArrayList<>();
 }
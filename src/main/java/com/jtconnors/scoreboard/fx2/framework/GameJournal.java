@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.framework;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/*
+ * An append-only journal of the master's state changes, kept in
+ * memory-mapped files, from which the scoreboard can be restored after
+ * the operator's PC crashed or the master was quit in the middle of a
+ * game.  The master appends every value it records in its
+ * UpdateStateTable (see UpdateBatcher), and recover() replays the journal
+ * into a fresh UpdateStateTable on startup.
+ *
+ * Each journal file is made up of a header followed by fixed size
+ * records:
+ *
+ *     header:  magic (4 bytes), version (4 bytes), variable count
+ *              (4 bytes), epoch (4 bytes)
+ *     record:  update variable ID (4 bytes), value (4 bytes), index
+ *              (4 bytes), check (4 bytes)
+ *
+ * A record is valid if its index is its position in the file and its
+ * check, which covers the epoch, matches, so replay stops at the first
+ * record that was never written, only partly made it to disk, or was
+ * left over from an earlier epoch, and the master carries on appending
+ * from there.  Records never straddle a page.
+ *
+ * A file is mapped REGION_SIZE bytes at a time, growing as needed.
+ * Appending is a few memory stores, the mapped pages being written back
+ * by the OS; the background thread forces them to disk every
+ * JOURNAL_SYNC_INTERVAL (see FxConstants), which bounds what a power
+ * failure can lose.  A crash of the JVM alone loses nothing.
+ *
+ * Most records are clock ticks, so every JOURNAL_CHECKPOINT_RECORDS
+ * records the journal is compacted.  There are two journal files, the
+ * journal's path and path.1, used in turn: the master starts over at the
+ * beginning of the other file with a checkpoint, one record per variable
+ * holding its current value, and carries on appending there.  The
+ * background thread forces the checkpoint to disk, and only then writes
+ * the file's header with the next epoch, recovery replaying the valid
+ * file with the latest epoch.  Replay therefore takes at most a
+ * checkpoint and JOURNAL_CHECKPOINT_RECORDS records however long the
+ * game, and each file stays within a region.  Files are overwritten in
+ * place rather than truncated or renamed, which mapped files may not be
+ * on every platform.  Should the master crash between the start of a
+ * checkpoint and its header being written, the records appended in
+ * between, a few milliseconds' worth, are lost.
+ *
+ * Events, like the horn, are not state and are never journaled.
+ *
+ * Records are appended on the master's JavaFX application thread only.
+ */
+public class GameJournal {
+
+    private final static Logger LOGGER =
+            Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private static final int MAGIC = 0x53424a4c;
+    private static final int VERSION = 2;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int VARIABLE_COUNT_OFFSET = 8;
+    private static final int EPOCH_OFFSET = 12;
+    private static final int HEADER_SIZE = 16;
+
+    private static final int ID_OFFSET = 0;
+    private static final int VALUE_OFFSET = 4;
+    private static final int INDEX_OFFSET = 8;
+    private static final int CHECK_OFFSET = 12;
+    private static final int RECORD_SIZE = 16;
+
+    /*
+     * 8K records per region, room for a checkpoint followed by
+     * JOURNAL_CHECKPOINT_RECORDS records.
+     */
+    private static final int REGION_SIZE = 1 << 17;
+
+    private static final ScheduledExecutorService SYNCER =
+            Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread thread = new Thread(r, "GameJournal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final RandomAccessFile[] files;
+    private final int variableCount;
+
+    /*
+     * The file being appended to and its epoch, and the region being
+     * appended to and the file offset it is mapped at.  The region is
+     * read by the sync thread.
+     */
+    private int current;
+    private int epoch;
+    private volatile MappedByteBuffer region;
+    private long regionOffset;
+
+    /*
+     * Number of records in the current file, and in its checkpoint
+     */
+    private int recordCount;
+    private int checkpointCount = 0;
+
+    /*
+     * Set while the sync thread has yet to write the header of the last
+     * checkpoint, the next one waiting until it has.
+     */
+    private volatile boolean checkpointPending = false;
+
+    /*
+     * Current value of each update variable, from which checkpoints are
+     * written
+     */
+    private final int[] values;
+    private final boolean[] known;
+
+    private final ScheduledFuture<?> syncTask;
+
+    private GameJournal(RandomAccessFile[] files, int variableCount,
+            int current, int epoch, int recordCount) throws IOException {
+        this.files = files;
+        this.variableCount = variableCount;
+        this.current = current;
+        this.epoch = epoch;
+        this.recordCount = recordCount;
+        values = new int[variableCount];
+        known = new boolean[variableCount];
+        long end = HEADER_SIZE + ((long) recordCount * RECORD_SIZE);
+        map(end - (end % REGION_SIZE));
+        long interval = (long) FxConstants.instance()
+                .JOURNAL_SYNC_INTERVAL.toMillis();
+        syncTask = SYNCER.scheduleWithFixedDelay(this::sync, interval,
+                interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a new journal at path, for a master with variableCount update
+     * variables.  The journal files of the previous game, if any, are kept
+     * as path.prev and path.1.prev rather than overwritten, in case the
+     * master was restarted without -RecoverJournal by mistake.
+     */
+    public static GameJournal create(Path path, int variableCount)
+            throws IOException {
+        for (int i = 0; i < 2; i++) {
+            Path filePath = filePath(path, i);
+            if (Files.exists(filePath)) {
+                Files.move(filePath, sibling(filePath, ".prev"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        RandomAccessFile[] files = openFiles(path);
+        try {
+            GameJournal journal =
+                    new GameJournal(files, variableCount, 0, 1, 0);
+            journal.putHeader(journal.region, 1);
+            return journal;
+        } catch (IOException e) {
+            closeQuietly(files);
+            throw e;
+        }
+    }
+
+    /**
+     * Replays the journal at path into state, then opens it to append to,
+     * starting with a checkpoint of the recovered state.
+     * If there is no journal for variableCount update variables at path
+     * (the files are missing, or were written with another
+     * configuration), nothing is replayed and a new journal is started.
+     */
+    public static GameJournal recover(Path path, int variableCount,
+            UpdateStateTable state) throws IOException {
+        RandomAccessFile[] files = openFiles(path);
+        try {
+            int current = -1;
+            int epoch = 0;
+            for (int i = 0; i < 2; i++) {
+                int fileEpoch = readEpoch(files[i], variableCount);
+                if (fileEpoch > epoch) {
+                    current = i;
+                    epoch = fileEpoch;
+                }
+            }
+            if (current < 0) {
+                closeQuietly(files);
+                LOGGER.warning("No journal to recover: " + path);
+                return create(path, variableCount);
+            }
+            RandomAccessFile file = files[current];
+            MappedByteBuffer buffer = file.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, file.length());
+            int count = 0;
+            for (long pos = HEADER_SIZE; pos + RECORD_SIZE <= file.length();
+                    pos += RECORD_SIZE) {
+                int record = (int) pos;
+                int id = buffer.getInt(record + ID_OFFSET);
+                int value = buffer.getInt(record + VALUE_OFFSET);
+                if (buffer.getInt(record + INDEX_OFFSET) != count ||
+                        buffer.getInt(record + CHECK_OFFSET) !=
+                        check(epoch, id, value, count) ||
+                        id < 0 || id >= variableCount) {
+                    break;
+                }
+                state.set(id, value);
+                count++;
+            }
+            LOGGER.info("Recovered " + count + " journal records from "
+                    + filePath(path, current));
+            GameJournal journal = new GameJournal(files, variableCount,
+                    current, epoch, count);
+            for (int id = 0; id < variableCount; id++) {
+                if (state.isKnown(id)) {
+                    journal.values[id] = state.get(id);
+                    journal.known[id] = true;
+                }
+            }
+            /*
+             * Pages may have reached the disk out of order, leaving valid
+             * records of this epoch after the first torn one.  Appending
+             * to this file would fill the gap and bring them back to life
+             * on the next recovery, so start over in the other file.
+             */
+            journal.checkpoint();
+            return journal;
+        } catch (IOException e) {
+            closeQuietly(files);
+            throw e;
+        }
+    }
+
+    private static Path filePath(Path path, int i) {
+        return i == 0 ? path : sibling(path, ".1");
+    }
+
+    private static Path sibling(Path path, String suffix) {
+        return path.resolveSibling(path.getFileName() + suffix);
+    }
+
+    private static RandomAccessFile[] openFiles(Path path)
+            throws IOException {
+        RandomAccessFile[] files = new RandomAccessFile[2];
+        try {
+            for (int i = 0; i < 2; i++) {
+                files[i] = new RandomAccessFile(
+                        filePath(path, i).toFile(), "rw");
+            }
+        } catch (IOException e) {
+            closeQuietly(files);
+            throw e;
+        }
+        return files;
+    }
+
+    /*
+     * Returns the epoch of a journal file for variableCount update
+     * variables, or 0 if it isn't one.
+     */
+    private static int readEpoch(RandomAccessFile file, int variableCount)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (file.getChannel().read(header, header.position()) < 0) {
+                return 0;
+            }
+        }
+        if (header.getInt(MAGIC_OFFSET) != MAGIC ||
+                header.getInt(VERSION_OFFSET) != VERSION ||
+                header.getInt(VARIABLE_COUNT_OFFSET) != variableCount) {
+            return 0;
+        }
+        return Math.max(header.getInt(EPOCH_OFFSET), 0);
+    }
+
+    private static int check(int epoch, int id, int value, int index) {
+        int h = MAGIC ^ index;
+        h = (h * 31) + epoch;
+        h = (h * 31) + id;
+        h = (h * 31) + value;
+        return h ^ (h >>> 16);
+    }
+
+    private void putHeader(MappedByteBuffer buffer, int epoch) {
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(VARIABLE_COUNT_OFFSET, variableCount);
+        buffer.putInt(EPOCH_OFFSET, epoch);
+    }
+
+    /*
+     * Maps the region of the current file at offset, which is a multiple
+     * of REGION_SIZE.
+     */
+    private void map(long offset) throws IOException {
+        region = files[current].getChannel().map(
+                FileChannel.MapMode.READ_WRITE, offset, REGION_SIZE);
+        regionOffset = offset;
+    }
+
+    /**
+     * Appends value for update variable id.  Master only.
+     */
+    public void append(int id, int value) {
+        if (id < 0 || id >= variableCount) {
+            return;
+        }
+        values[id] = value;
+        known[id] = true;
+        if (recordCount - checkpointCount >=
+                FxConstants.instance().JOURNAL_CHECKPOINT_RECORDS &&
+                !checkpointPending) {
+            checkpoint();
+            return;
+        }
+        put(id, value);
+    }
+
+    private void put(int id, int value) {
+        long pos = HEADER_SIZE + ((long) recordCount * RECORD_SIZE)
+                - regionOffset;
+        if (pos + RECORD_SIZE > REGION_SIZE) {
+            MappedByteBuffer previous = region;
+            try {
+                map(regionOffset + REGION_SIZE);
+            } catch (IOException e) {
+                LOGGER.severe("Journal write failed: " + e.getMessage());
+                return;
+            }
+            SYNCER.execute(previous::force);
+            pos -= REGION_SIZE;
+        }
+        int record = (int) pos;
+        region.putInt(record + ID_OFFSET, id);
+        region.putInt(record + VALUE_OFFSET, value);
+        region.putInt(record + INDEX_OFFSET, recordCount);
+        region.putInt(record + CHECK_OFFSET,
+                check(epoch, id, value, recordCount));
+        recordCount++;
+    }
+
+    /*
+     * Starts over in the other file with a checkpoint of the current
+     * values, leaving it to the sync thread to make it the one recovered
+     * from.  If the other file can't be mapped, the current one carries on
+     * until the next checkpoint is due.
+     */
+    private void checkpoint() {
+        MappedByteBuffer previousRegion = region;
+        long previousRegionOffset = regionOffset;
+        current = 1 - current;
+        try {
+            map(0);
+        } catch (IOException e) {
+            LOGGER.severe("Journal checkpoint failed: " + e.getMessage());
+            current = 1 - current;
+            region = previousRegion;
+            regionOffset = previousRegionOffset;
+            checkpointCount = recordCount;
+            return;
+        }
+        epoch++;
+        recordCount = 0;
+        for (int id = 0; id < variableCount; id++) {
+            if (known[id]) {
+                put(id, values[id]);
+            }
+        }
+        checkpointCount = recordCount;
+        MappedByteBuffer checkpointRegion = region;
+        int checkpointEpoch = epoch;
+        checkpointPending = true;
+        SYNCER.execute(() -> {
+            checkpointRegion.force();
+            putHeader(checkpointRegion, checkpointEpoch);
+            checkpointRegion.force();
+            checkpointPending = false;
+        });
+    }
+
+    private static void closeQuietly(RandomAccessFile[] files) {
+        for (RandomAccessFile file : files) {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    LOGGER.severe("Journal close failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /*
+     * Forces the region being appended to to disk.  Called periodically by
+     * the sync thread.
+     */
+    private void sync() {
+        MappedByteBuffer buffer = region;
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Stops syncing in the background, forces the journal to disk and
+     * closes it, once any checkpoint in progress is complete.  Master
+     * only.
+     */
+    public void close() {
+        syncTask.cancel(false);
+        try {
+            SYNCER.submit(() -> {
+                sync();
+                closeQuietly(files);
+            }).get();
+        } catch (InterruptedException | ExecutionException e) {
+            LOGGER.severe("Journal close failed: " + e.getMessage());
+        }
+    }
+}
@@ -31,15 +31,25 @@
 
 package com.jtconnors.scoreboard.fx2.framework;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
 import javafx.scene.Group;
 import javafx.scene.input.KeyCode;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.AudioClip;
+import com.jtconnors.socket.DebugFlags;
 import com.jtconnors.scoreboard.common.Constants;
 import com.jtconnors.scoreboard.common.Globals;
 import com.jtconnors.scoreboard.common.Utils;
@@ -49,16 +59,98 @@ import com.jtconnors.scoreboard.common.Utils;
  * framework created by the DisplayableWithDigits class to turn the horn on
  * and off, yet the horn cannot be displayed.  So, much of the required
  * implementation methods found here are basically null.
+ *
+ * The horn must sound the moment it is pressed, so its sound is decoded
+ * once, when the scoreboard starts, rather than streamed on every press.
+ * Formats javax.sound.sampled can read (PCM WAV, AIFF, AU) are decoded
+ * to PCM and loaded into a Clip, which is opened up front and only has
+ * to be rewound to play again.  Other formats, like the MP3 files found
+ * in Scoreboard.jar, are loaded into a JavaFX AudioClip, which also
+ * decodes the whole sound to memory.
+ *
+ * With debug flag DEBUG_STATUS set, the time between a request to play
+ * the horn and the first frames of a Clip being played is logged, and
+ * compared against LATENCY_TARGET.  The Clip's START event is not used,
+ * as it only reports that start() was called.  An AudioClip does not
+ * report when it is heard, so only the time its play() call took is
+ * logged: use a PCM WAV file (see -hornURL) to measure the horn.
  */
 public class Horn extends DisplayableWithDigits {
     
     private final static Logger LOGGER =
             Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
     
-    private final MediaPlayer mediaPlayer;
+    /*
+     * Time (milliseconds) a Clip should take to start playing
+     */
+    private static final long LATENCY_TARGET = 20;
+
+    /*
+     * Interval and timeout (milliseconds) of the polling of a Clip's frame
+     * position when its latency is measured
+     */
+    private static final long PROBE_INTERVAL = 1;
+    private static final long PROBE_TIMEOUT = 1000;
+
+    /*
+     * The sound of the horn, whichever way it was loaded
+     */
+    private interface Player {
+        void play();
+        void stop();
+        boolean isPlaying();
+    }
+
+    private final Player player;
+
+    /*
+     * Horns scheduled with soundAt() and stopAt() are started and stopped
+     * on this thread rather than on the JavaFX application thread, which
+     * would only get to them at its next pulse.  Being a single thread,
+     * it keeps them in order.  Both Clip and AudioClip may be controlled
+     * from any thread.
+     */
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread thread = new Thread(r, "Horn-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
     
-    public MediaPlayer getMediaPlayer() {
-        return mediaPlayer;
+    /**
+     * Plays the horn from the beginning, right away
+     */
+    public void sound() {
+        player.play();
+    }
+
+    public void stop() {
+        player.stop();
+    }
+
+    public boolean isPlaying() {
+        return player.isPlaying();
+    }
+
+    /**
+     * Plays the horn from the beginning at the given time (as returned by
+     * System.nanoTime()), or right away if that time has passed.
+     */
+    public void soundAt(long time) {
+        schedule(this::sound, time);
+    }
+
+    /**
+     * Stops the horn at the given time (as returned by System.nanoTime()),
+     * or right away if that time has passed.
+     */
+    public void stopAt(long time) {
+        schedule(this::stop, time);
+    }
+
+    private void schedule(Runnable action, long time) {
+        SCHEDULER.schedule(action, Math.max(time - System.nanoTime(), 0),
+                TimeUnit.NANOSECONDS);
     }
 
 /****************************************************************************
@@ -101,6 +193,32 @@ public class Horn extends DisplayableWithDigits {
  *           End DisplayableWithDigits method definition section            *
  ****************************************************************************/
 
+    /*
+     * Horn on/off is an event rather than a state, so it must not be
+     * coalesced with a later value.  Ship it right away.
+     */
+    @Override
+    public void sendMessageToSocket(String varName, int value) {
+        if (isRemote()) {
+            return;
+        }
+        UpdateBatcher.instance().postNow(XMLSpec.getUpdateVariableId(varName),
+                value);
+    }
+
+    /*
+     * Tells the remote scoreboards to sound the horn at masterTime (see
+     * UpdateBatcher.postAt()).
+     */
+    public void sendMessageToSocketAt(String varName, int value,
+            long masterTime) {
+        if (isRemote()) {
+            return;
+        }
+        UpdateBatcher.instance().postAt(XMLSpec.getUpdateVariableId(varName),
+                value, masterTime);
+    }
+
     /*
      * Constructors
      */
@@ -154,7 +272,151 @@ public class Horn extends DisplayableWithDigits {
                     Constants.instance().DEFAULT_HORN_FILE);
         }
 
-        final Media media = new Media(resource.toString());
-        mediaPlayer = new MediaPlayer(media);
-    }    
+        player = loadPlayer(resource);
+    }
+
+    private static Player loadPlayer(URL resource) {
+        long start = System.nanoTime();
+        Player loaded;
+        try {
+            loaded = loadClip(resource);
+        } catch (UnsupportedAudioFileException | IllegalArgumentException e) {
+            /*
+             * Not a format javax.sound.sampled can decode, e.g. MP3
+             */
+            loaded = loadAudioClip(resource);
+        } catch (IOException | LineUnavailableException e) {
+            LOGGER.info(Utils.ExceptionStackTraceAsString(e));
+            loaded = loadAudioClip(resource);
+        }
+        LOGGER.log(Level.INFO, "Horn loaded in {0} ms",
+                (System.nanoTime() - start) / 1000000);
+        return loaded;
+    }
+
+    /*
+     * Decodes the sound to PCM (16 bit signed, if it isn't PCM already)
+     * and opens a Clip holding it.
+     */
+    private static Player loadClip(URL resource)
+            throws UnsupportedAudioFileException, IOException,
+            LineUnavailableException {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(resource)) {
+            AudioFormat format = in.getFormat();
+            AudioInputStream pcm = in;
+            if (!format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) &&
+                    !format.getEncoding().equals(
+                            AudioFormat.Encoding.PCM_UNSIGNED)) {
+                pcm = AudioSystem.getAudioInputStream(new AudioFormat(
+                        AudioFormat.Encoding.PCM_SIGNED,
+                        format.getSampleRate(), 16, format.getChannels(),
+                        format.getChannels() * 2, format.getSampleRate(),
+                        false), in);
+            }
+            byte[] data = pcm.readAllBytes();
+            Clip clip = AudioSystem.getClip();
+            clip.open(pcm.getFormat(), data, 0, data.length);
+            return new ClipPlayer(clip);
+        }
+    }
+
+    private static Player loadAudioClip(URL resource) {
+        LOGGER.log(Level.INFO, "Playing {0} with AudioClip, a PCM WAV file "
+                + "would start faster", resource);
+        AudioClip audioClip = new AudioClip(resource.toString());
+        return new Player() {
+            @Override
+            public void play() {
+                long requested = System.nanoTime();
+                audioClip.stop();
+                audioClip.play();
+                if (isLatencyLogged()) {
+                    LOGGER.log(Level.INFO, "Horn AudioClip.play() returned "
+                            + "{0} ms after it was pressed, its output "
+                            + "latency can't be measured",
+                            (System.nanoTime() - requested) / 1000000);
+                }
+            }
+
+            @Override
+            public void stop() {
+                audioClip.stop();
+            }
+
+            @Override
+            public boolean isPlaying() {
+                return audioClip.isPlaying();
+            }
+        };
+    }
+
+    private static class ClipPlayer implements Player {
+
+        private final Clip clip;
+
+        /*
+         * Time (System.nanoTime()) play() was last called.  A probe left
+         * over from an earlier press gives up.
+         */
+        private volatile long requestedAt = 0;
+
+        ClipPlayer(Clip clip) {
+            this.clip = clip;
+        }
+
+        /*
+         * Rewind the clip to insure the horn is played from the beginning
+         * every time.
+         */
+        @Override
+        public void play() {
+            clip.stop();
+            clip.setFramePosition(0);
+            long requested = System.nanoTime();
+            requestedAt = requested;
+            clip.start();
+            if (isLatencyLogged()) {
+                probeLatency(requested);
+            }
+        }
+
+        @Override
+        public void stop() {
+            clip.stop();
+        }
+
+        @Override
+        public boolean isPlaying() {
+            return clip.isRunning();
+        }
+
+        /*
+         * Polls the frame position of the clip, which only moves once the
+         * audio device has played its first frames, and logs how long
+         * after the request that happened.  Gives up after PROBE_TIMEOUT,
+         * e.g. if the horn was stopped in the meantime.
+         */
+        private void probeLatency(long requested) {
+            SCHEDULER.schedule(() -> {
+                if (requested != requestedAt) {
+                    return;
+                }
+                long millis = (System.nanoTime() - requested) / 1000000;
+                if (clip.getLongFramePosition() > 0) {
+                    LOGGER.log(millis > LATENCY_TARGET ?
+                            Level.WARNING : Level.INFO,
+                            "Horn played {0} ms after it was pressed "
+                            + "(target {1} ms)",
+                            new Object[]{millis, LATENCY_TARGET});
+                } else if (millis < PROBE_TIMEOUT) {
+                    probeLatency(requested);
+                }
+            }, PROBE_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static boolean isLatencyLogged() {
+        return (Globals.instance().debugFlags &
+                DebugFlags.instance().DEBUG_STATUS) != 0;
+    }
 }
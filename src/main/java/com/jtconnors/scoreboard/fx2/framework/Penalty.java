@@ -129,8 +129,15 @@ public abstract class Penalty extends DisplayableWithDigits {
      * seconds.  The visible resolution of the timer is in seconds.  The
      * number of seconds remaining in the penalty timer is stored in the
      * overallValue variable, inherited from the DisplayableWithDigits class.
+     *
+     * The tenths remaining are derived from the timer's TimeBase: they are
+     * anchorTenthsRemaining less the number of tenths elapsed since
+     * anchorTenths.  Any change not made by the timer handler moves the
+     * anchor.
      */
-    private int tenthsRemaining;
+    private int anchorTenthsRemaining;
+    private long anchorTenths;
+    private boolean updatingFromTimer = false;
     protected Timer timer;
 
     public Timer getTimer() {
@@ -241,9 +248,12 @@ public abstract class Penalty extends DisplayableWithDigits {
 
     @Override
     protected void refreshOnOverallValueChange(int overallValue) {
-        tenthsRemaining = overallValue * 10;
+        if (!updatingFromTimer && timer != null) {
+            anchorTenthsRemaining = overallValue * 10;
+            anchorTenths = timer.getTimeBase().getElapsedTenths();
+        }
         setDigits();
-        sendMessageToSocket(varName, String.valueOf(overallValue));
+        sendMessageToSocket(varName, overallValue);
     }
 
     @Override
@@ -391,15 +401,28 @@ public abstract class Penalty extends DisplayableWithDigits {
         FunctionPtr handler = new FunctionPtr() {
             @Override
             public void invoke() {
-                if (tenthsRemaining > 0) {
-                    tenthsRemaining -= 1;
+                if (getOverallValue() > 0) {
+                    long elapsed = getTimer().getTimeBase().getElapsedTenths()
+                            - anchorTenths;
+                    int tenthsRemaining =
+                            (int) Math.max(0, anchorTenthsRemaining - elapsed);
+                    /*
+                     * The displayed seconds only drop once a whole second
+                     * has gone by.
+                     */
+                    int value = (tenthsRemaining + 9) / 10;
+                    if (value != getOverallValue()) {
+                        updatingFromTimer = true;
+                        setOverallValue(value);
+                        updatingFromTimer = false;
+                    }
+                    /*
+                     * The Timer is shared with the game clock and the other
+                     * penalties, so just go idle once the penalty expires.
+                     */
                     if (tenthsRemaining == 0) {
                         playerNumber.setDigitsDisplayState(
                             DigitsDisplayStates.BLANK);
-                        getTimer().stop();
-                    }
-                    if ((tenthsRemaining % 10) == 0) {
-                        setOverallValue(tenthsRemaining / 10);
                     }
                 } 
             }
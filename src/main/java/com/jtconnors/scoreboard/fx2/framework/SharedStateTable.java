@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.framework;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * A scoreboard state table kept in a memory-mapped file, so that remote
+ * scoreboards running on the master's host can read the master's state
+ * without a socket, and without parsing anything.  The master writes
+ * every value it records in its UpdateStateTable here too (see
+ * UpdateBatcher), and each remote polls the file once per pulse (see
+ * SharedStateReader).
+ *
+ * The file is made up of a header followed by one slot per update
+ * variable, indexed by update variable ID:
+ *
+ *     header:  magic (4 bytes), version (4 bytes), slot count (4 bytes
+ *              padded to 8), session (8 bytes), generation (8 bytes),
+ *              padded to 64 bytes
+ *     slot:    sequence (8 bytes), value (4 bytes padded to 8),
+ *              time (8 bytes)
+ *
+ * in the host's byte order, the file being shared by the host only.
+ *
+ * Each slot is a seqlock: the writer makes its sequence number odd while
+ * it changes the slot, and even again once done, so a reader which sees
+ * the same even sequence before and after reading the slot knows it read
+ * a consistent value, and that the value changed if the sequence did.
+ * The generation is bumped after every write, so readers don't have to
+ * look at the slots while nothing changes.  The session is picked at
+ * random each time the master opens the file, telling readers to start
+ * over when the master restarts.  The file is never truncated, as a
+ * reader which has it mapped would crash reading past its end, so a
+ * restarted master reuses it and its sequence numbers carry on.
+ *
+ * Events, like the horn, are written to their slot like state.  The time
+ * is the System.nanoTime() at which an event takes effect, or 0 for right
+ * away: readers are on the same host, so they share the master's clock.
+ * An event which is written twice between two polls is only seen once,
+ * with its last value.
+ *
+ * There is a single writer, the master's JavaFX application thread.  A
+ * reader instance is meant to be used by a single thread.
+ */
+public class SharedStateTable {
+
+    private static final int MAGIC = 0x53425354;
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int SLOT_COUNT_OFFSET = 8;
+    private static final int SESSION_OFFSET = 16;
+    private static final int GENERATION_OFFSET = 24;
+    /*
+     * Slots start on a cache line of their own, and are aligned on 8
+     * bytes, as atomic access to a long requires.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int VALUE_OFFSET = 8;
+    private static final int TIME_OFFSET = 16;
+    private static final int SLOT_SIZE = 24;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(
+            long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(
+            int[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+
+    /*
+     * Reader state: the sequence number of each slot and the generation
+     * and session seen by the last poll(), and whether a slot was left
+     * for the next poll.
+     */
+    private long[] lastSequences;
+    private long lastGeneration = -1;
+    private long lastSession;
+    private boolean rescan = false;
+
+    private SharedStateTable(MappedByteBuffer buffer, int slotCount) {
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+    }
+
+    /*
+     * Number of times a reader retries a slot the writer is changing
+     * before leaving it for the next poll.
+     */
+    private static final int MAX_READ_ATTEMPTS = 1000;
+
+    /**
+     * Creates the file at path, or reuses it if it exists, with a slot for
+     * each of slotCount update variables, to be written by the master.
+     */
+    public static SharedStateTable create(Path path, int slotCount)
+            throws IOException {
+        long size = HEADER_SIZE + ((long) slotCount * SLOT_SIZE);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() < size) {
+                file.setLength(size);
+            }
+            MappedByteBuffer buffer = file.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.nativeOrder());
+            /*
+             * A master which died while writing a slot left its sequence
+             * number odd.
+             */
+            for (int id = 0; id < slotCount; id++) {
+                int slot = HEADER_SIZE + (id * SLOT_SIZE);
+                long sequence = buffer.getLong(slot + SEQUENCE_OFFSET);
+                if ((sequence & 1) != 0) {
+                    buffer.putLong(slot + SEQUENCE_OFFSET, sequence + 1);
+                }
+            }
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putInt(SLOT_COUNT_OFFSET, slotCount);
+            LONG.setRelease(buffer, SESSION_OFFSET,
+                    ThreadLocalRandom.current().nextLong());
+            return new SharedStateTable(buffer, slotCount);
+        }
+    }
+
+    /**
+     * Opens the file at path, written by a master, for reading.
+     */
+    public static SharedStateTable open(Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            if (file.length() < HEADER_SIZE) {
+                throw new IOException("Not a scoreboard state file: " + path);
+            }
+            MappedByteBuffer buffer = file.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, file.length());
+            buffer.order(ByteOrder.nativeOrder());
+            int slotCount = buffer.getInt(SLOT_COUNT_OFFSET);
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC ||
+                    buffer.getInt(VERSION_OFFSET) != VERSION ||
+                    slotCount < 0 || file.length() <
+                    HEADER_SIZE + ((long) slotCount * SLOT_SIZE)) {
+                throw new IOException("Not a scoreboard state file: " + path);
+            }
+            SharedStateTable table = new SharedStateTable(buffer, slotCount);
+            table.lastSequences = new long[slotCount];
+            return table;
+        }
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Writes value, taking effect at time (0 for right away), to the slot
+     * of update variable id.  Master only.
+     */
+    public void set(int id, int value, long time) {
+        if (id < 0 || id >= slotCount) {
+            return;
+        }
+        int slot = HEADER_SIZE + (id * SLOT_SIZE);
+        long sequence = (long) LONG.getOpaque(buffer, slot + SEQUENCE_OFFSET);
+        LONG.setOpaque(buffer, slot + SEQUENCE_OFFSET, sequence + 1);
+        VarHandle.storeStoreFence();
+        INT.setOpaque(buffer, slot + VALUE_OFFSET, value);
+        LONG.setOpaque(buffer, slot + TIME_OFFSET, time);
+        LONG.setRelease(buffer, slot + SEQUENCE_OFFSET, sequence + 2);
+        long generation = (long) LONG.getOpaque(buffer, GENERATION_OFFSET);
+        LONG.setRelease(buffer, GENERATION_OFFSET, generation + 1);
+    }
+
+    /**
+     * Finds the slots written since the last call, and stores their IDs,
+     * values and times in the first entries of the given arrays, which
+     * must hold getSlotCount() entries.  Returns the number of slots
+     * found.  The first call, and the first after the master restarted,
+     * return every slot written so far, events excepted as they are
+     * stale by then.  Reader only.
+     */
+    public int poll(int[] ids, int[] values, long[] times) {
+        long generation = (long) LONG.getAcquire(buffer, GENERATION_OFFSET);
+        long session = (long) LONG.getAcquire(buffer, SESSION_OFFSET);
+        boolean initial = (lastGeneration < 0 || session != lastSession);
+        if (!initial && !rescan && generation == lastGeneration) {
+            return 0;
+        }
+        rescan = false;
+        if (initial) {
+            Arrays.fill(lastSequences, 0);
+            lastSession = session;
+        }
+        lastGeneration = generation;
+        int count = 0;
+        for (int id = 0; id < slotCount; id++) {
+            int slot = HEADER_SIZE + (id * SLOT_SIZE);
+            long sequence = 0;
+            int value = 0;
+            long time = 0;
+            boolean consistent = false;
+            for (int attempt = 0; !consistent &&
+                    attempt < MAX_READ_ATTEMPTS; attempt++) {
+                sequence = (long) LONG.getAcquire(buffer,
+                        slot + SEQUENCE_OFFSET);
+                value = (int) INT.getOpaque(buffer, slot + VALUE_OFFSET);
+                time = (long) LONG.getOpaque(buffer, slot + TIME_OFFSET);
+                VarHandle.loadLoadFence();
+                consistent = (sequence & 1) == 0 && sequence ==
+                        (long) LONG.getOpaque(buffer, slot + SEQUENCE_OFFSET);
+            }
+            if (!consistent) {
+                rescan = true;
+                continue;
+            }
+            if (sequence == lastSequences[id]) {
+                continue;
+            }
+            lastSequences[id] = sequence;
+            if (initial && XMLSpec.isEventVariable(id)) {
+                continue;
+            }
+            ids[count] = id;
+            values[count] = value;
+            times[count] = time;
+            count++;
+        }
+        return count;
+    }
+}
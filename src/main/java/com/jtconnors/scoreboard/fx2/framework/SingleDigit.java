@@ -95,7 +95,7 @@ public abstract class SingleDigit extends DisplayableWithDigits {
     @Override
     protected void refreshOnOverallValueChange(int overallValue) {
         singleDigit.setValue(overallValue % 10);
-        sendMessageToSocket(varName, String.valueOf(overallValue));
+        sendMessageToSocket(varName, overallValue);
     }
 
     @Override
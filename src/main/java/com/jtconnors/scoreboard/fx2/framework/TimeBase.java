@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.framework;
+
+/*
+ * A monotonic time base for the game clock.  Elapsed time is measured with
+ * System.nanoTime() and only accumulates while the time base is running,
+ * so it represents the amount of game time that has gone by.
+ *
+ * Clock and Penalty derive their displayed values from the elapsed time
+ * rather than counting Timer ticks, so a late or dropped pulse only delays
+ * the next repaint instead of making the clock run slow.  All of the
+ * timers of a scoreboard share one TimeBase (see the Timer constructors)
+ * so the game clock and the penalty clocks can never drift apart.
+ */
+public class TimeBase {
+
+    private static final long NANOS_PER_TENTH = 100_000_000L;
+
+    private long startNanos;
+    private long accumulatedNanos = 0;
+    private boolean running = false;
+
+    public void start() {
+        if (!running) {
+            startNanos = System.nanoTime();
+            running = true;
+        }
+    }
+
+    public void stop() {
+        if (running) {
+            accumulatedNanos += System.nanoTime() - startNanos;
+            running = false;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the amount of game time, in nanoseconds, during which
+     * this time base has been running.
+     */
+    public long getElapsedNanos() {
+        if (running) {
+            return accumulatedNanos + (System.nanoTime() - startNanos);
+        }
+        return accumulatedNanos;
+    }
+
+    /**
+     * Returns the elapsed game time in tenths of seconds, the resolution
+     * of the scoreboard clocks.
+     */
+    public long getElapsedTenths() {
+        return getElapsedNanos() / NANOS_PER_TENTH;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.framework;
+
+/*
+ * Estimates the offset between this scoreboard's clock (System.nanoTime())
+ * and the master's, so that events the master schedules at a given time
+ * of its own, like the horn (see BinarySpec.TYPE_HORN_AT), happen at the
+ * same moment everywhere.
+ *
+ * The estimate is NTP style.  A remote sends a time request holding its
+ * time t0, which the master answers with t0 and its own time t1.  When the
+ * reply arrives at t3, the round-trip delay is t3 - t0, and assuming the
+ * network takes as long each way, the master's clock is ahead of this one
+ * by t1 - (t0 + t3) / 2.  The error of a sample is at most half its delay,
+ * so of the last FILTER_SIZE samples, the one with the shortest delay is
+ * used.  Samples delayed by a busy network or a queue are thus ignored,
+ * and old ones age out as the two clocks drift apart.
+ *
+ * The master's clock is only meaningful while connected to it, reset()
+ * discards the samples when the connection is lost.
+ *
+ * This class follows the Singleton design pattern.  Samples are added on
+ * the socket reading thread and used on the JavaFX application thread, so
+ * its methods are synchronized.
+ */
+public class TimeSync {
+
+    private TimeSync() {}
+
+    private static class LazyHolder {
+        private static final TimeSync INSTANCE = new TimeSync();
+    }
+
+    public static TimeSync instance() {
+        return LazyHolder.INSTANCE;
+    }
+
+    private static final int FILTER_SIZE = 8;
+
+    /*
+     * Offset (master time - local time) and round-trip delay of the last
+     * FILTER_SIZE samples, in nanoseconds.
+     */
+    private final long[] offsets = new long[FILTER_SIZE];
+    private final long[] delays = new long[FILTER_SIZE];
+    private int sampleCount = 0;
+    private int nextSample = 0;
+
+    /**
+     * Adds the sample given by a time reply: requestTime and replyTime
+     * are the local times the request was sent and the reply received,
+     * masterTime the master's time when it answered.
+     */
+    public synchronized void addSample(long requestTime, long masterTime,
+            long replyTime) {
+        long delay = replyTime - requestTime;
+        if (delay < 0) {
+            return;
+        }
+        offsets[nextSample] = masterTime - requestTime - (delay / 2);
+        delays[nextSample] = delay;
+        nextSample = (nextSample + 1) % FILTER_SIZE;
+        sampleCount = Math.min(sampleCount + 1, FILTER_SIZE);
+    }
+
+    /**
+     * Tells that this scoreboard shares the master's clock, as it runs on
+     * the same host (see SharedStateTable).
+     */
+    public synchronized void setSameClock() {
+        reset();
+        addSample(0, 0, 0);
+    }
+
+    public synchronized void reset() {
+        sampleCount = 0;
+        nextSample = 0;
+    }
+
+    /**
+     * Determines if the master's clock is known
+     */
+    public synchronized boolean isSynchronized() {
+        return sampleCount > 0;
+    }
+
+    /**
+     * Converts a master time to the local time at which it occurs.  Only
+     * meaningful if isSynchronized().
+     */
+    public synchronized long toLocalTime(long masterTime) {
+        return masterTime - offsets[bestSample()];
+    }
+
+    /**
+     * Converts a local time to the master's.  Only meaningful if
+     * isSynchronized().
+     */
+    public synchronized long toMasterTime(long localTime) {
+        return localTime + offsets[bestSample()];
+    }
+
+    /**
+     * Returns the round-trip delay of the sample used, which bounds the
+     * error of the estimate, or -1 if there is none.
+     */
+    public synchronized long getDelay() {
+        return sampleCount > 0 ? delays[bestSample()] : -1;
+    }
+
+    private int bestSample() {
+        int best = 0;
+        for (int i = 1; i < sampleCount; i++) {
+            if (delays[i] < delays[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -44,7 +44,9 @@ import javafx.util.Duration;
  *     or removed dynamically.
  *   - At the end of each clock tick, defined by the duration argument of the
  *     Timer constructor (default 1/10th second), all associated handlers
- *     will be invoked.
+ *     will be invoked, in the order in which they were added.  A single
+ *     Timer can therefore drive every clock on a scoreboard from one pulse.
+ *   - A TimeBase which runs while the Timer runs.
  */
 public class Timer {
 
@@ -54,6 +56,7 @@ public class Timer {
      * All handlers associated with the Timer are placed in this ArrayList
      */
     private ArrayList<FunctionPtr> handlers;
+    private final TimeBase timeBase;
 
     public Timer() {
         this(FxConstants.instance().ONE_TENTH_SECOND);
@@ -61,6 +64,7 @@ public class Timer {
 
     public Timer(Duration duration) {
         this.duration = duration;
+        timeBase = new TimeBase();
         handlers = new ArrayList<FunctionPtr>();
         timeline = new Timeline();
         timeline.setCycleCount(Timeline.INDEFINITE);
@@ -115,11 +119,17 @@ public class Timer {
         return timeline;
     }
 
+    public TimeBase getTimeBase() {
+        return timeBase;
+    }
+
     public void start() {
+        timeBase.start();
         timeline.play();
     }
 
     public void stop() {
         timeline.stop();
+        timeBase.stop();
     }
 }
\ No newline at end of file
@@ -128,7 +128,7 @@ public abstract class TwoDigit extends DisplayableWithDigits {
             }
         }
         setDigits(displayOverallValue);
-        sendMessageToSocket(varName, String.valueOf(displayOverallValue));
+        sendMessageToSocket(varName, displayOverallValue);
     }
 
     @Override
@@ -164,38 +164,32 @@ public abstract class TwoDigit extends DisplayableWithDigits {
      * here.
      */
     @Override
-    public void setOverallValueViaUpdate(String overallValueStr) {
-        if (overallValueStr.equals("-1")) {
+    public void setOverallValueViaUpdate(int overallValue) {
+        if (overallValue == -1) {
             setDigitsDisplayState(DigitsDisplayStates.BLANK);
-            setOverallValue(Integer.parseInt("0"));
+            setOverallValue(0);
         } else {
-            setOverallValue(Integer.parseInt(overallValueStr));
+            setOverallValue(overallValue);
         }
     }
     /*
      * This method overrides the superclass method found in the
      * DisplayableDigits class.  In order to support special case numbers
-     * that have trailing zeros, we'll possibly modify valueStr prior to
-     * calling the superclass sendMessage() method.
+     * that have trailing zeros, we'll possibly modify value prior to
+     * calling the superclass sendMessage() method.  Note that a special
+     * case number like "06" goes out over the wire as plain 6; remote
+     * scoreboards determine the display state locally.
      */
     @Override
-    public void sendMessageToSocket(String varName, String valueStr) {
-        String modifiedValueStr = valueStr;
+    public void sendMessageToSocket(String varName, int value) {
+        int modifiedValue = value;
         if (isAllowTrailingZeros()) {
-            int valueInt = Integer.parseInt(valueStr);
-            if (valueInt < 10) {
-                switch (getDigitsDisplayState()) {
-                    case BLANK:
-                        if (valueInt == 0) {
-                            modifiedValueStr = "-1";
-                        }
-                        break;
-                    case SPECIAL_CASE:
-                        modifiedValueStr = "0" + valueStr;
-                }
+            if (value == 0 &&
+                    getDigitsDisplayState() == DigitsDisplayStates.BLANK) {
+                modifiedValue = -1;
             }
         }
-        super.sendMessageToSocket(varName, modifiedValueStr);
+        super.sendMessageToSocket(varName, modifiedValue);
     }
     /*
      * This method overrides the superclass method of the same name.
@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.framework;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Logger;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.event.ActionEvent;
+import javafx.application.Platform;
+import javafx.util.Duration;
+import com.jtconnors.scoreboard.common.Constants;
+import com.jtconnors.scoreboard.common.Globals;
+import com.jtconnors.scoreboard.fx2.networking.UpdateTransport;
+
+/*
+ * Collects the updates posted by DisplayableWithDigits instances on the
+ * master and ships them to the remote scoreboards once per pulse.
+ *
+ * A single clock tick with four running penalties changes five variables
+ * in the same pulse.  Rather than writing five messages to the socket, the
+ * first update posted schedules a flush via Platform.runLater(), which runs
+ * after the current pulse's event handlers have completed.  Until then only
+ * the latest value of each variable is kept, and the flush ships all of
+ * them in one frame: a <root> element containing several <update>
+ * elements, or a binary frame with several records (see BinarySpec).
+ *
+ * Events which must not be coalesced, like the horn, are sent with
+ * postNow(), which flushes whatever is pending first so ordering is kept.
+ * postAt() does the same for events which must happen at a given time.
+ *
+ * Every message shipped carries a sequence number (in the binary frame
+ * header, or as the seq attribute of the <root> element) so receivers can
+ * detect lost messages.  The last value shipped for each variable is kept
+ * in an UpdateStateTable, from which sendSnapshot() builds a message
+ * holding the full scoreboard state.  It is also written, events
+ * included, to the SharedStateTable read by the remote scoreboards on
+ * this host, and appended, events excepted, to the master's GameJournal,
+ * if there are.  Over multicast, where datagrams may be lost, snapshots
+ * are sent periodically (see startSnapshots()) so that late joiners and
+ * lossy receivers converge without a round-trip to the master.
+ *
+ * This class follows the Singleton design pattern.  It is meant to be used
+ * on the JavaFX application thread only.
+ */
+public class UpdateBatcher {
+
+    private final static Logger LOGGER =
+            Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private UpdateBatcher() {}
+
+    private static class LazyHolder {
+        private static final UpdateBatcher INSTANCE = new UpdateBatcher();
+    }
+
+    public static UpdateBatcher instance() {
+        return LazyHolder.INSTANCE;
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /*
+     * Latest value and pending flag for each update variable ID
+     */
+    private int[] pendingValues = new int[INITIAL_CAPACITY];
+    private boolean[] pending = new boolean[INITIAL_CAPACITY];
+
+    /*
+     * IDs of the pending variables in the order they were first posted,
+     * and the values to ship alongside them when the batch is flushed.
+     */
+    private int[] batchIds = new int[INITIAL_CAPACITY];
+    private int[] batchValues = new int[INITIAL_CAPACITY];
+    private int batchCount = 0;
+
+    private boolean flushScheduled = false;
+    private final StringBuilder xmlBuf = new StringBuilder();
+
+    /*
+     * Sequence number of the next message shipped
+     */
+    private int nextSequence = 0;
+
+    private final UpdateStateTable stateTable = new UpdateStateTable();
+    private Timeline snapshotTimeline;
+
+    /*
+     * IDs of the clocks sent in clock run or clock stop frames, and of
+     * those of them which are running.  A snapshot only holds values, so
+     * it is followed by clock frames restoring their state (see
+     * snapshotClockStrs()).
+     */
+    private final BitSet clocks = new BitSet();
+    private final BitSet runningClocks = new BitSet();
+
+    public UpdateStateTable getStateTable() {
+        return stateTable;
+    }
+
+    /**
+     * Records the latest value for the update variable with the given ID,
+     * to be shipped at the end of the current pulse.
+     */
+    public void post(int id, int value) {
+        if (id < 0) {
+            return;
+        }
+        ensureCapacity(id + 1);
+        if (!pending[id]) {
+            pending[id] = true;
+            batchIds[batchCount++] = id;
+        }
+        pendingValues[id] = value;
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Platform.runLater(this::flush);
+        }
+    }
+
+    /**
+     * Ships the update right away, after any pending updates
+     */
+    public void postNow(int id, int value) {
+        if (id < 0) {
+            return;
+        }
+        flush();
+        shareState(id, value, 0);
+        ensureCapacity(1);
+        batchIds[0] = id;
+        batchValues[0] = value;
+        ship(encode(BinarySpec.TYPE_UPDATE, 0, 1));
+    }
+
+    /**
+     * Ships a horn frame right away, after any pending updates, telling
+     * receivers to apply the update at masterTime (System.nanoTime() on
+     * this master, see TimeSync).  The frame is binary whatever the
+     * -UpdateProtocol, as XML has no equivalent.
+     */
+    public void postAt(int id, int value, long masterTime) {
+        if (id < 0) {
+            return;
+        }
+        flush();
+        shareState(id, value, masterTime);
+        ship(BinarySpec.hornAtStr(nextSequence++, id, value, masterTime));
+    }
+
+    private void setState(int id, int value) {
+        stateTable.set(id, value);
+        shareState(id, value, 0);
+        GameJournal journal = FxGlobals.instance().journal;
+        if (journal != null) {
+            journal.append(id, value);
+        }
+    }
+
+    private void shareState(int id, int value, long time) {
+        SharedStateTable sharedStateTable =
+                FxGlobals.instance().sharedStateTable;
+        if (sharedStateTable != null) {
+            sharedStateTable.set(id, value, time);
+        }
+    }
+
+    /**
+     * Records the value of an update variable in the state table without
+     * shipping it.  Used for values the remote scoreboards compute on
+     * their own, like a running clock.
+     */
+    public void record(int id, int value) {
+        setState(id, value);
+    }
+
+    /**
+     * Ships a clock run frame (the clock is running down from value) or a
+     * clock stop frame (the clock is stopped at value) right away, after
+     * any pending updates.
+     */
+    public void postClock(int id, int value, boolean running) {
+        if (id < 0) {
+            return;
+        }
+        flush();
+        setState(id, value);
+        clocks.set(id);
+        runningClocks.set(id, running);
+        ensureCapacity(1);
+        batchIds[0] = id;
+        batchValues[0] = value;
+        ship(encode(running ? BinarySpec.TYPE_CLOCK_RUN :
+                BinarySpec.TYPE_CLOCK_STOP, 0, 1));
+    }
+
+    /**
+     * Ships all pending updates
+     */
+    public void flush() {
+        flushScheduled = false;
+        if (batchCount == 0) {
+            return;
+        }
+        for (int i = 0; i < batchCount; i++) {
+            int id = batchIds[i];
+            batchValues[i] = pendingValues[id];
+            pending[id] = false;
+            setState(id, batchValues[i]);
+        }
+        int count = batchCount;
+        batchCount = 0;
+        if (Globals.instance().batchUpdates ||
+                Globals.instance().useBinaryUpdates) {
+            ship(encode(BinarySpec.TYPE_UPDATE, 0, count));
+        } else {
+            for (int i = 0; i < count; i++) {
+                ship(encode(BinarySpec.TYPE_UPDATE, i, 1));
+            }
+        }
+    }
+
+    /**
+     * Ships the last known value of every update variable in a single
+     * snapshot message, after any pending updates.
+     */
+    public void sendSnapshot() {
+        flush();
+        int count = stateTable.getKnownCount();
+        if (count == 0) {
+            return;
+        }
+        ensureCapacity(count);
+        stateTable.copyTo(batchIds, batchValues);
+        ship(encode(BinarySpec.TYPE_SNAPSHOT, 0, count));
+        for (String clockStr : clockStrs(nextSequence - 1)) {
+            ship(clockStr);
+        }
+    }
+
+    /**
+     * Returns the last known value of every update variable as a single
+     * snapshot message, after shipping any pending updates, or null if
+     * nothing is known yet.  The message is not shipped: it is meant for
+     * a single remote display that just connected, so it carries the
+     * sequence number of the last message shipped rather than using up a
+     * new one, and the other displays see no gap.
+     */
+    public String snapshotStr() {
+        flush();
+        int count = stateTable.getKnownCount();
+        if (count == 0) {
+            return null;
+        }
+        ensureCapacity(count);
+        stateTable.copyTo(batchIds, batchValues);
+        return encode(BinarySpec.TYPE_SNAPSHOT, nextSequence - 1, 0, count);
+    }
+
+    /**
+     * Returns the clock run and clock stop frames to send right after the
+     * snapshot returned by snapshotStr(), so that a display which joins
+     * while a clock runs doesn't show it frozen until the next correction.
+     * They carry the snapshot's sequence number, which receivers accept
+     * for clock frames following a snapshot.  The list is empty if no
+     * clock frame has been sent, as with XML updates.
+     */
+    public List<String> snapshotClockStrs() {
+        return clockStrs(nextSequence - 1);
+    }
+
+    private List<String> clockStrs(int sequence) {
+        List<String> clockStrs = new ArrayList<>(2);
+        BitSet stoppedClocks = (BitSet) clocks.clone();
+        stoppedClocks.andNot(runningClocks);
+        for (BitSet ids : new BitSet[] {runningClocks, stoppedClocks}) {
+            int count = ids.cardinality();
+            if (count == 0) {
+                continue;
+            }
+            ensureCapacity(count);
+            int i = 0;
+            for (int id = ids.nextSetBit(0); id >= 0;
+                    id = ids.nextSetBit(id + 1)) {
+                batchIds[i] = id;
+                batchValues[i] = stateTable.get(id);
+                i++;
+            }
+            clockStrs.add(BinarySpec.frameStr(ids == runningClocks ?
+                    BinarySpec.TYPE_CLOCK_RUN : BinarySpec.TYPE_CLOCK_STOP,
+                    sequence, batchIds, batchValues, count));
+        }
+        return clockStrs;
+    }
+
+    /**
+     * Starts sending a snapshot every interval.  Calling this again
+     * replaces the previous interval.
+     */
+    public void startSnapshots(Duration interval) {
+        if (snapshotTimeline != null) {
+            snapshotTimeline.stop();
+        }
+        snapshotTimeline = new Timeline(new KeyFrame(interval,
+                (ActionEvent event) -> sendSnapshot()));
+        snapshotTimeline.setCycleCount(Timeline.INDEFINITE);
+        snapshotTimeline.play();
+    }
+
+    /*
+     * Encodes count entries of the batch, starting at offset, as a single
+     * message of the given type (see BinarySpec).
+     */
+    private String encode(int type, int offset, int count) {
+        return encode(type, nextSequence++, offset, count);
+    }
+
+    private String encode(int type, int sequence, int offset, int count) {
+        boolean snapshot = (type == BinarySpec.TYPE_SNAPSHOT);
+        if (Globals.instance().useBinaryUpdates) {
+            if (offset == 0) {
+                return BinarySpec.frameStr(type, sequence, batchIds,
+                        batchValues, count);
+            }
+            return BinarySpec.updateStr(sequence, batchIds[offset],
+                    batchValues[offset]);
+        }
+        /*
+         * With -BatchUpdates:false, plain <update> elements are sent for
+         * the benefit of older remote scoreboards, without a sequence
+         * number.
+         */
+        boolean wrap = snapshot || Globals.instance().batchUpdates;
+        String tag = snapshot ? XMLSpec.TAG_SNAPSHOT : XMLSpec.TAG_ROOT;
+        xmlBuf.setLength(0);
+        if (wrap) {
+            XMLSpec.appendStartTag(xmlBuf, tag, sequence);
+        }
+        for (int i = offset; i < offset + count; i++) {
+            XMLSpec.appendUpdate(xmlBuf,
+                    XMLSpec.getUpdateVariableName(batchIds[i]),
+                    batchValues[i]);
+        }
+        if (wrap) {
+            xmlBuf.append(snapshot ? XMLSpec.END_SNAPSHOT : XMLSpec.END_ROOT);
+        }
+        return xmlBuf.toString();
+    }
+
+    private void ship(String msg) {
+        if ((Globals.instance().debugFlags &
+                Constants.instance().DEBUG_XMLOUTPUT) != 0) {
+            LOGGER.info(msg);
+        }
+        if (Globals.instance().useIPSocket) {
+            if (FxGlobals.instance().multipleSocketWriter != null) {
+                FxGlobals.instance().multipleSocketWriter.postUpdate(msg);
+            }
+        } else {
+            if (FxGlobals.instance().multicastWriter != null) {
+                FxGlobals.instance().multicastWriter.sendMessage(msg);
+            }
+        }
+        for (UpdateTransport transport : FxGlobals.instance().transports) {
+            transport.postUpdate(msg);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (pending.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, pending.length * 2);
+        int[] newPendingValues = new int[newCapacity];
+        boolean[] newPending = new boolean[newCapacity];
+        int[] newBatchIds = new int[newCapacity];
+        int[] newBatchValues = new int[newCapacity];
+        System.arraycopy(pendingValues, 0, newPendingValues, 0,
+                pendingValues.length);
+        System.arraycopy(pending, 0, newPending, 0, pending.length);
+        System.arraycopy(batchIds, 0, newBatchIds, 0, batchCount);
+        pendingValues = newPendingValues;
+        pending = newPending;
+        batchIds = newBatchIds;
+        batchValues = newBatchValues;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.framework;
+
+/*
+ * Holds the last value shipped to the remote scoreboards for each update
+ * variable, indexed by update variable ID (see XMLSpec.getUpdateVariableId()).
+ * This is the state a snapshot frame is built from.
+ *
+ * Events, like the horn, are not state and are never recorded here.
+ *
+ * Instances are not thread safe and are meant to be used on the JavaFX
+ * application thread only.
+ */
+public class UpdateStateTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] values = new int[INITIAL_CAPACITY];
+    private boolean[] known = new boolean[INITIAL_CAPACITY];
+    private int knownCount = 0;
+
+    public void set(int id, int value) {
+        if (id < 0) {
+            return;
+        }
+        if (id >= values.length) {
+            int newCapacity = Math.max(id + 1, values.length * 2);
+            int[] newValues = new int[newCapacity];
+            boolean[] newKnown = new boolean[newCapacity];
+            System.arraycopy(values, 0, newValues, 0, values.length);
+            System.arraycopy(known, 0, newKnown, 0, known.length);
+            values = newValues;
+            known = newKnown;
+        }
+        if (!known[id]) {
+            known[id] = true;
+            knownCount++;
+        }
+        values[id] = value;
+    }
+
+    /**
+     * Determines if a value has been recorded for the update variable ID
+     */
+    public boolean isKnown(int id) {
+        return id >= 0 && id < known.length && known[id];
+    }
+
+    public int get(int id) {
+        return values[id];
+    }
+
+    /**
+     * Returns the number of update variables with a recorded value
+     */
+    public int getKnownCount() {
+        return knownCount;
+    }
+
+    /**
+     * Copies the ID and value of every recorded update variable, in ID
+     * order, into the ids and values arrays, which must hold at least
+     * getKnownCount() entries.  Returns the number of entries copied.
+     */
+    public int copyTo(int[] ids, int[] values) {
+        int count = 0;
+        for (int id = 0; id < known.length; id++) {
+            if (known[id]) {
+                ids[count] = id;
+                values[count] = this.values[id];
+                count++;
+            }
+        }
+        return count;
+    }
+}
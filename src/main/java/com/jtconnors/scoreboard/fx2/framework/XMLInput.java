@@ -63,8 +63,39 @@ public abstract class XMLInput {
             Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
 
     protected DocumentBuilder documentBuilder;
+    protected XMLUpdateScanner updateScanner = new XMLUpdateScanner();
     protected ScoreboardInputInterface scoreboardInputInterface;
 
+    /*
+     * Sequence tracking of update messages (see UpdateBatcher).  A message
+     * more than one ahead of lastSequence means messages were lost; the
+     * state is repaired by the next snapshot.  Messages at or slightly
+     * behind lastSequence are duplicates or arrived out of order and are
+     * dropped.  Anything further behind is assumed to come from a
+     * restarted master and is accepted.  The exception are the clock
+     * frames which follow a snapshot, with the snapshot's sequence number
+     * (see UpdateBatcher.snapshotClockStrs()), and snapshots with the
+     * sequence number of the last message, which a connection may be sent
+     * while it is up to date (see SelectorSocketWriter.subscribe()).
+     */
+    private static final int REORDER_WINDOW = 64;
+    private int lastSequence;
+    private boolean sequenceKnown = false;
+    private boolean afterSnapshot = false;
+    private boolean resyncPending = false;
+    private int gapCount = 0;
+
+    /*
+     * Updates read since the last flushUpdates(), coalesced so that only
+     * the newest value of each variable is applied.  Indexed by update
+     * variable ID; pendingIds keeps the order in which variables were
+     * first seen.  Only accessed on the JavaFX application thread.
+     */
+    private int[] pendingValues = new int[0];
+    private boolean[] pending = new boolean[0];
+    private int[] pendingIds = new int[0];
+    private int pendingCount = 0;
+
     public XMLInput(ScoreboardInputInterface scoreboardInputInterface) {
         this.scoreboardInputInterface = scoreboardInputInterface;
     }
@@ -205,21 +236,217 @@ public abstract class XMLInput {
             Element element = (Element) node;
             String name = XMLSpec.getTagValue(XMLSpec.TAG_NAME, element);
             if (XMLSpec.isUpdateVariable(name)) {
-                scoreboardInputInterface.updateVariable(name,
-                        XMLSpec.getTagValue(XMLSpec.TAG_OVERALLVALUE, element));
+                deferUpdate(XMLSpec.getUpdateVariableId(name),
+                        Integer.parseInt(XMLSpec.getTagValue(
+                        XMLSpec.TAG_OVERALLVALUE, element)));
             }
         }
     }
 
+    /*
+     * Holds back an update until the next flushUpdates(), replacing any
+     * value already held back for the same variable.  Events (see
+     * XMLSpec.isEventVariable()) can't be coalesced, so they are applied
+     * right away, after whatever was held back before them.
+     */
+    protected void deferUpdate(int id, int overallValue) {
+        if (id < 0 || id >= XMLSpec.UpdateVariableNames.size() ||
+                XMLSpec.isEventVariable(id)) {
+            flushUpdates();
+            scoreboardInputInterface.updateVariableById(id, overallValue);
+            return;
+        }
+        if (pending.length <= id) {
+            int capacity = XMLSpec.UpdateVariableNames.size();
+            int[] newPendingValues = new int[capacity];
+            boolean[] newPending = new boolean[capacity];
+            int[] newPendingIds = new int[capacity];
+            System.arraycopy(pendingValues, 0, newPendingValues, 0,
+                    pendingValues.length);
+            System.arraycopy(pending, 0, newPending, 0, pending.length);
+            System.arraycopy(pendingIds, 0, newPendingIds, 0, pendingCount);
+            pendingValues = newPendingValues;
+            pending = newPending;
+            pendingIds = newPendingIds;
+        }
+        if (!pending[id]) {
+            pending[id] = true;
+            pendingIds[pendingCount++] = id;
+        }
+        pendingValues[id] = overallValue;
+    }
+
+    /**
+     * Reads a single update which needed no parsing, holding it back like
+     * the updates of a message.  A masterTime other than 0 is the time on
+     * the master's clock at which the update, an event, takes effect.
+     */
+    public void readUpdate(int id, int overallValue, long masterTime) {
+        if (masterTime != 0) {
+            flushUpdates();
+            scoreboardInputInterface.updateVariableAt(id, overallValue,
+                    masterTime);
+        } else {
+            deferUpdate(id, overallValue);
+        }
+    }
+
+    /**
+     * Applies the updates held back by deferUpdate(), at most one per
+     * variable, in the order the variables were first updated.
+     */
+    public void flushUpdates() {
+        for (int i = 0; i < pendingCount; i++) {
+            int id = pendingIds[i];
+            pending[id] = false;
+            scoreboardInputInterface.updateVariableById(id, pendingValues[id]);
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Returns the number of times lost update messages were detected
+     */
+    public int getGapCount() {
+        return gapCount;
+    }
+
+    /*
+     * Determines whether the message with the given sequence number should
+     * be applied, and tracks gaps in the sequence.
+     */
+    protected boolean acceptSequence(int sequence, boolean snapshot) {
+        if (sequenceKnown) {
+            int delta = sequence - lastSequence;
+            if (delta <= 0 && delta > -REORDER_WINDOW &&
+                    !(snapshot && delta == 0)) {
+                return false;
+            }
+            if (delta > 1 && !snapshot) {
+                gapCount++;
+                resyncPending = true;
+                LOGGER.log(Level.INFO,
+                        "Lost {0} update message(s), waiting for snapshot",
+                        delta - 1);
+            }
+        }
+        if (snapshot && resyncPending) {
+            resyncPending = false;
+            LOGGER.info("Resynchronized from snapshot");
+        }
+        lastSequence = sequence;
+        sequenceKnown = true;
+        afterSnapshot = snapshot;
+        return true;
+    }
+
+    /*
+     * Determines whether a clock frame with the given sequence number
+     * restores the clock state of the snapshot just accepted
+     */
+    private boolean isSnapshotClockFrame(int sequence) {
+        return afterSnapshot && sequence == lastSequence;
+    }
+
+    /*
+     * Methods associated with binary update frames (see BinarySpec)
+     */
+
+    public void readUpdateFrame(String msg) {
+        try {
+            int version = BinarySpec.getVersion(msg);
+            if (version != BinarySpec.PROTOCOL_VERSION) {
+                LOGGER.log(Level.WARNING,
+                        "Ignoring update frame with unsupported version {0}",
+                        version);
+                return;
+            }
+            int type = BinarySpec.getType(msg);
+            if (BinarySpec.isHornAt(msg)) {
+                if (acceptSequence(BinarySpec.getSequence(msg), false)) {
+                    flushUpdates();
+                    scoreboardInputInterface.updateVariableAt(
+                            BinarySpec.getRecordId(msg, 0),
+                            BinarySpec.getRecordValue(msg, 0),
+                            BinarySpec.getHornTimestamp(msg));
+                }
+                return;
+            }
+            if (type != BinarySpec.TYPE_UPDATE &&
+                    type != BinarySpec.TYPE_SNAPSHOT &&
+                    type != BinarySpec.TYPE_CLOCK_RUN &&
+                    type != BinarySpec.TYPE_CLOCK_STOP) {
+                return;
+            }
+            int sequence = BinarySpec.getSequence(msg);
+            boolean clock = (type == BinarySpec.TYPE_CLOCK_RUN ||
+                    type == BinarySpec.TYPE_CLOCK_STOP);
+            if (!(clock && isSnapshotClockFrame(sequence)) &&
+                    !acceptSequence(sequence,
+                    type == BinarySpec.TYPE_SNAPSHOT)) {
+                return;
+            }
+            int recordCount = BinarySpec.getRecordCount(msg);
+            for (int i = 0; i < recordCount; i++) {
+                if (clock) {
+                    flushUpdates();
+                    scoreboardInputInterface.updateClockById(
+                            BinarySpec.getRecordId(msg, i),
+                            BinarySpec.getRecordValue(msg, i),
+                            type == BinarySpec.TYPE_CLOCK_RUN);
+                } else {
+                    deferUpdate(BinarySpec.getRecordId(msg, i),
+                            BinarySpec.getRecordValue(msg, i));
+                }
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.info(Utils.ExceptionStackTraceAsString(e));
+        }
+    }
+
+    /*
+     * Reads an update message from the master, which can either be an XML
+     * <update> element, a <root> or <snapshot> element containing several
+     * <update> elements or a binary frame.  Updates are held back until
+     * flushUpdates() is called.
+     */
     public void readUpdateStr(String msg) {
+        if (BinarySpec.isFrame(msg)) {
+            readUpdateFrame(msg);
+            return;
+        }
+        /*
+         * Try the lightweight scanner first, only fall back to building
+         * a DOM if the message isn't in the expected form.
+         */
+        if (updateScanner.scan(msg)) {
+            if (updateScanner.hasSequence() &&
+                    !acceptSequence(updateScanner.getSequence(),
+                    updateScanner.isSnapshot())) {
+                return;
+            }
+            for (int i = 0; i < updateScanner.getCount(); i++) {
+                deferUpdate(updateScanner.getId(i), updateScanner.getValue(i));
+            }
+            return;
+        }
         try {
             InputStream msgStream = new
                     ByteArrayInputStream(msg.getBytes("UTF-8"));
             Document doc = documentBuilder.parse(msgStream);
-            doc.getDocumentElement().normalize();
-            NodeList nodeLst = doc.getElementsByTagName("update");
-            readUpdateNode(nodeLst.item(0));
-        } catch (IOException | SAXException e) {
+            Element docElement = doc.getDocumentElement();
+            docElement.normalize();
+            String seqStr = docElement.getAttribute(XMLSpec.ATTR_SEQ);
+            if (!seqStr.isEmpty() &&
+                    !acceptSequence(Integer.parseInt(seqStr),
+                    docElement.getTagName().equals(XMLSpec.TAG_SNAPSHOT))) {
+                return;
+            }
+            NodeList nodeLst = doc.getElementsByTagName(XMLSpec.TAG_UPDATE);
+            for (int s = 0; s < nodeLst.getLength(); s++) {
+                readUpdateNode(nodeLst.item(s));
+            }
+        } catch (IOException | SAXException | NumberFormatException e) {
             LOGGER.info(Utils.ExceptionStackTraceAsString(e));
         }
     }
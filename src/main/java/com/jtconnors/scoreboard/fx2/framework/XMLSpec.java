@@ -34,6 +34,7 @@ package com.jtconnors.scoreboard.fx2.framework;
 import java.util.ArrayList;
 import com.jtconnors.scoreboard.common.LayoutXOptions;
 import java.util.Formatter;
+import java.util.HashMap;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -136,6 +137,13 @@ public abstract class XMLSpec {
     public final static String END_TOPLEFTOBJECT =
             "</" + TAG_TOPLEFTOBJECT + ">";
     
+    public final static String TAG_ROOT = "root";
+    public final static String START_ROOT = "<" + TAG_ROOT + ">";
+    public final static String END_ROOT = "</" + TAG_ROOT + ">";
+
+    public final static String TAG_SNAPSHOT = "snapshot";
+    public final static String END_SNAPSHOT = "</" + TAG_SNAPSHOT + ">";
+
     public final static String TAG_UPDATE = "update";
     public final static String START_UPDATE = "<" + TAG_UPDATE + ">";
     public final static String END_UPDATE = "</" + TAG_UPDATE + ">";
@@ -144,6 +152,11 @@ public abstract class XMLSpec {
     public final static String START_URL = "<" + TAG_URL + ">";
     public final static String END_URL = "</" + TAG_URL + ">";
 
+    /*
+     * Attribute names
+     */
+    public final static String ATTR_SEQ = "seq";
+
     /*
      * Alignment options as defined in scoreboard.common.LayoutXOptions enum.
      * Any changes to the enum must be reflected here.
@@ -273,6 +286,26 @@ public abstract class XMLSpec {
     public static ArrayList<String> DisplayableWithDigitsNames;
     public static ArrayList<String> ConfigVariableNames;
     public static ArrayList<String> UpdateVariableNames;
+    /*
+     * Maps each name in UpdateVariableNames to its index (i.e. its update
+     * variable ID).  Rebuilt by indexUpdateVariableNames().
+     */
+    private static HashMap<String, Integer> UpdateVariableIds =
+            new HashMap<>();
+    /*
+     * Open addressing hash table of update variable IDs plus one (0 marks
+     * an empty slot), keyed by the String hash code of the variable name.
+     * Lets getUpdateVariableId(String, int, int) look up a name inside a
+     * message without allocating a substring.  Rebuilt by
+     * indexUpdateVariableNames().
+     */
+    private static int[] UpdateVariableIdTable = new int[1];
+    /*
+     * Indexed by update variable ID, true for variables which represent
+     * events (like the horn) rather than state.  Events must never be
+     * coalesced with a later value.
+     */
+    private static boolean[] UpdateVariableIsEvent = new boolean[0];
 /****************************************************************************
  *  End ArrayList declarations                                              *
  ****************************************************************************/
@@ -343,12 +376,88 @@ public abstract class XMLSpec {
      * can be updated
      */
     public static boolean isUpdateVariable(String name) {
-        for (String n : UpdateVariableNames) {
-            if (name.equals(n)) {
-                return true;
+        return UpdateVariableIds.containsKey(name);
+    }
+
+    /**
+     * Builds the name to ID index used by isUpdateVariable(),
+     * getUpdateVariableId() and isEventVariable().  Must be called by an
+     * implementation's init() method once UpdateVariableNames has been
+     * populated.  eventVariableNames lists the update variables which
+     * represent events rather than state.
+     */
+    protected static void indexUpdateVariableNames(
+            ArrayList<String> eventVariableNames) {
+        UpdateVariableIds = new HashMap<>();
+        UpdateVariableIsEvent = new boolean[UpdateVariableNames.size()];
+        int tableSize = Integer.highestOneBit(
+                Math.max(1, UpdateVariableNames.size()) * 2) * 2;
+        int[] idTable = new int[tableSize];
+        for (int id = 0; id < UpdateVariableNames.size(); id++) {
+            String name = UpdateVariableNames.get(id);
+            if (UpdateVariableIds.put(name, id) == null) {
+                int slot = name.hashCode() & (tableSize - 1);
+                while (idTable[slot] != 0) {
+                    slot = (slot + 1) & (tableSize - 1);
+                }
+                idTable[slot] = id + 1;
             }
+            UpdateVariableIsEvent[id] = eventVariableNames.contains(name);
         }
-        return false;
+        UpdateVariableIdTable = idTable;
+    }
+
+    /**
+     * Determines if the update variable with the given ID represents an
+     * event rather than state
+     */
+    public static boolean isEventVariable(int id) {
+        return id >= 0 && id < UpdateVariableIsEvent.length &&
+                UpdateVariableIsEvent[id];
+    }
+
+    /**
+     * Returns the numeric ID of an update variable, as used by binary
+     * update frames, or -1 if the name is not an update variable.
+     */
+    public static int getUpdateVariableId(String name) {
+        Integer id = UpdateVariableIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Same as getUpdateVariableId(String), for the name found between
+     * the start (inclusive) and end (exclusive) indexes of str.  No
+     * substring is allocated.
+     */
+    public static int getUpdateVariableId(String str, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + str.charAt(i);
+        }
+        int[] idTable = UpdateVariableIdTable;
+        int mask = idTable.length - 1;
+        int length = end - start;
+        for (int slot = hash & mask; idTable[slot] != 0;
+                slot = (slot + 1) & mask) {
+            String name = UpdateVariableNames.get(idTable[slot] - 1);
+            if (name.length() == length &&
+                    name.regionMatches(0, str, start, length)) {
+                return idTable[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the name of the update variable associated with a numeric
+     * ID, or null if the ID is out of range.
+     */
+    public static String getUpdateVariableName(int id) {
+        if (id < 0 || id >= UpdateVariableNames.size()) {
+            return null;
+        }
+        return UpdateVariableNames.get(id);
     }
 
     /**
@@ -400,4 +509,28 @@ public abstract class XMLSpec {
                 overallValueStr);
         return stringBuilder.toString();
     }
+
+    /**
+     * Appends the start tag of a <root> or <snapshot> element, carrying
+     * the sequence number of the message, to stringBuilder.
+     */
+    public static void appendStartTag(StringBuilder stringBuilder,
+            String tag, int sequence) {
+        stringBuilder.append('<').append(tag).append(' ').append(ATTR_SEQ)
+                .append("=\"").append(sequence).append("\">");
+    }
+
+    /**
+     * Appends an <update> element to stringBuilder.  Used to build
+     * <root> elements containing several updates without going through
+     * a Formatter for each one.
+     */
+    public static void appendUpdate(StringBuilder stringBuilder,
+            String varName, int overallValue) {
+        stringBuilder.append(START_UPDATE)
+                .append(START_NAME).append(varName).append(END_NAME)
+                .append(START_OVERALLVALUE).append(overallValue)
+                .append(END_OVERALLVALUE)
+                .append(END_UPDATE);
+    }
 }
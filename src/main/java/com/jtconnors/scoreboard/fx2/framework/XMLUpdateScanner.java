@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.framework;
+
+import static com.jtconnors.scoreboard.fx2.framework.XMLSpec.*;
+
+/*
+ * A lightweight, hand written scanner for XML <update> messages.
+ *
+ * Update messages sent by the master have a fixed shape, namely
+ *
+ *     <update><name>NAME</name><overallValue>VALUE</overallValue></update>
+ *
+ * optionally with several <update> elements wrapped in a <root> or
+ * <snapshot> element carrying a seq attribute, so rather than building a
+ * DOM tree for every message, this class walks the message String
+ * directly and records the variable ID (see
+ * XMLSpec.getUpdateVariableId()) and value of each <update> element in
+ * int arrays that are reused from one message to the next.  Nothing is
+ * applied while scanning: if the message contains anything the scanner
+ * does not understand, scan() returns false and the caller is expected to
+ * fall back to a full XML parser.
+ *
+ * Instances are not thread safe and are meant to be used on the JavaFX
+ * application thread only.
+ */
+public class XMLUpdateScanner {
+
+    private static final int INITIAL_CAPACITY = 16;
+    /*
+     * Opening of the start tags which carry a seq attribute
+     */
+    private static final String OPEN_ROOT = "<" + TAG_ROOT;
+    private static final String OPEN_SNAPSHOT = "<" + TAG_SNAPSHOT;
+
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int count;
+    private int sequence;
+    private boolean hasSequence;
+    private boolean snapshot;
+
+    private String msg;
+    private int pos;
+
+    /**
+     * Returns the number of updates found by the last successful scan()
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the update variable ID of the i'th update, or -1 if the
+     * variable name was not recognized.
+     */
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    public int getValue(int i) {
+        return values[i];
+    }
+
+    /**
+     * Determines if the last scanned message carried a sequence number
+     */
+    public boolean hasSequence() {
+        return hasSequence;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Determines if the last scanned message was a <snapshot>
+     */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Scans msg for <update> elements.  Returns true if the entire message
+     * was understood and contained at least one update or a sequence
+     * number.
+     */
+    public boolean scan(String msg) {
+        this.msg = msg;
+        pos = 0;
+        count = 0;
+        hasSequence = false;
+        snapshot = false;
+        try {
+            String endTag = null;
+            if (expect(START_ROOT)) {
+                endTag = END_ROOT;
+            } else if (scanStartTag(OPEN_ROOT)) {
+                endTag = END_ROOT;
+            } else if (scanStartTag(OPEN_SNAPSHOT)) {
+                endTag = END_SNAPSHOT;
+                snapshot = true;
+            }
+            skipWhitespace();
+            while (pos < msg.length()) {
+                if (endTag != null && expect(endTag)) {
+                    endTag = null;
+                } else if (!scanUpdate()) {
+                    return false;
+                }
+                skipWhitespace();
+            }
+            /*
+             * A message may have had all of its updates filtered out for
+             * this display, it still carries a sequence number.
+             */
+            return endTag == null && (count > 0 || hasSequence);
+        } finally {
+            this.msg = null;
+        }
+    }
+
+    /*
+     * Scans a start tag of the form <tag seq="N">, where open is "<tag"
+     */
+    private boolean scanStartTag(String open) {
+        int start = pos;
+        if (expect(open) && expect(ATTR_SEQ) && expect("=\"")) {
+            int digitsStart = pos;
+            int value = scanInt();
+            if (pos > digitsStart && expect("\">")) {
+                sequence = value;
+                hasSequence = true;
+                return true;
+            }
+        }
+        pos = start;
+        return false;
+    }
+
+    private int scanInt() {
+        int digitsStart = pos;
+        int value = 0;
+        while (pos < msg.length() && pos - digitsStart < 10) {
+            int digit = Character.digit(msg.charAt(pos), 10);
+            if (digit < 0) {
+                break;
+            }
+            value = (value * 10) + digit;
+            pos++;
+        }
+        return value;
+    }
+
+    private boolean scanUpdate() {
+        if (!expect(START_UPDATE) || !expect(START_NAME)) {
+            return false;
+        }
+        int nameStart = pos;
+        int nameEnd = msg.indexOf('<', pos);
+        if (nameEnd < 0) {
+            return false;
+        }
+        pos = nameEnd;
+        if (!expect(END_NAME) || !expect(START_OVERALLVALUE)) {
+            return false;
+        }
+        skipWhitespace();
+        boolean negative = false;
+        if (pos < msg.length() && msg.charAt(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+        int digitsStart = pos;
+        int value = scanInt();
+        if (pos == digitsStart) {
+            return false;
+        }
+        if (!expect(END_OVERALLVALUE) || !expect(END_UPDATE)) {
+            return false;
+        }
+        add(lookupId(nameStart, nameEnd), negative ? -value : value);
+        return true;
+    }
+
+    private int lookupId(int nameStart, int nameEnd) {
+        return getUpdateVariableId(msg, nameStart, nameEnd);
+    }
+
+    private void add(int id, int value) {
+        if (count == ids.length) {
+            int[] newIds = new int[count * 2];
+            int[] newValues = new int[count * 2];
+            System.arraycopy(ids, 0, newIds, 0, count);
+            System.arraycopy(values, 0, newValues, 0, count);
+            ids = newIds;
+            values = newValues;
+        }
+        ids[count] = id;
+        values[count] = value;
+        count++;
+    }
+
+    private boolean expect(String tag) {
+        skipWhitespace();
+        if (msg.startsWith(tag, pos)) {
+            pos += tag.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < msg.length() && Character.isWhitespace(msg.charAt(pos))) {
+            pos++;
+        }
+    }
+}
@@ -248,7 +248,8 @@ public class HockeyScoreboardXMLSpec extends XMLSpec {
         }
         for (String s : HornVariableNames) {
             UpdateVariableNames.add(s);
-        }    
+        }
+        indexUpdateVariableNames(HornVariableNames);
     }
 
     /**
@@ -30,9 +30,12 @@
  */
 package com.jtconnors.scoreboard.fx2.framework.waterpolo;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import com.jtconnors.scoreboard.common.Globals;
 import javafx.beans.Observable;
 import javafx.scene.text.Font;
@@ -42,18 +45,19 @@ import javafx.application.Platform;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.Parent;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.animation.Animation;
 import javafx.scene.input.KeyCode;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Rectangle;
-import javafx.scene.media.MediaPlayer;
 import javafx.scene.paint.Color;
 import com.jtconnors.scoreboard.common.Constants;
 import com.jtconnors.scoreboard.common.ScoreboardOutputInterface;
@@ -61,16 +65,22 @@ import com.jtconnors.scoreboard.common.ScoreboardInputInterface;
 import com.jtconnors.scoreboard.common.XMLReaderInterface;
 import com.jtconnors.scoreboard.common.LayoutXOptions;
 import com.jtconnors.scoreboard.fx2.framework.XMLInput;
+import com.jtconnors.scoreboard.fx2.framework.Clock;
 import com.jtconnors.scoreboard.fx2.framework.Displayable;
 import com.jtconnors.scoreboard.fx2.framework.DisplayableWithDigits;
 import com.jtconnors.scoreboard.fx2.framework.FxGlobals;
+import com.jtconnors.scoreboard.fx2.framework.GameJournal;
 import com.jtconnors.scoreboard.fx2.framework.Horn;
 import com.jtconnors.scoreboard.fx2.framework.Penalty;
 import com.jtconnors.scoreboard.fx2.framework.ScoreboardWithClock;
+import com.jtconnors.scoreboard.fx2.framework.SharedStateTable;
 import com.jtconnors.scoreboard.fx2.framework.SingleDigit;
 import com.jtconnors.scoreboard.fx2.framework.TextNode;
+import com.jtconnors.scoreboard.fx2.framework.TimeSync;
 import com.jtconnors.scoreboard.fx2.framework.Timer;
 import com.jtconnors.scoreboard.fx2.framework.TwoDigit;
+import com.jtconnors.scoreboard.fx2.framework.UpdateBatcher;
+import com.jtconnors.scoreboard.fx2.framework.UpdateStateTable;
 import com.jtconnors.scoreboard.fx2.networking.FxSocketReader;
 import com.jtconnors.scoreboard.fx2.util.FXUtils;
 import com.jtconnors.scoreboard.common.DigitsDisplayStates;
@@ -79,6 +89,12 @@ import com.jtconnors.scoreboard.fx2.framework.XMLSpec;
 import com.jtconnors.scoreboard.fx2.networking.FxMulticastReader;
 import com.jtconnors.scoreboard.fx2.networking.FxMulticastWriter;
 import com.jtconnors.scoreboard.fx2.networking.FxMultipleSocketWriter;
+import com.jtconnors.scoreboard.fx2.networking.FxSelectorSocketWriter;
+import com.jtconnors.scoreboard.fx2.networking.FxWebGateway;
+import com.jtconnors.scoreboard.fx2.networking.LoopbackTransport;
+import com.jtconnors.scoreboard.fx2.networking.NetworkThreads;
+import com.jtconnors.scoreboard.fx2.networking.SharedStateReader;
+import com.jtconnors.scoreboard.fx2.networking.UpdateTransport;
 
 /*
  * This abstract class defines the behavior of a waterpolo scoreboard object.
@@ -118,15 +134,13 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
     }
 
     /*
-     * Timers associated with the Clock instance and 4 Penalty instances
-     * 
-     * Note: "protected Timer clockTimer" is part of this group and defined
-     * in the superclass ScoreboardWithClock.
+     * The Clock instance and the 4 Penalty instances are all driven by
+     * "protected Timer clockTimer", defined in the superclass
+     * ScoreboardWithClock.  Sharing a single Timer means there is one
+     * pulse per tick for the whole board, the handlers always run in the
+     * same order, and starting or stopping the clock starts or stops
+     * every penalty with it.
      */
-    protected Timer homePenalty1Timer;
-    protected Timer guestPenalty1Timer;
-    protected Timer homePenalty2Timer;
-    protected Timer guestPenalty2Timer;
 
     /*
      * These values, based upon the display width and height dimensions are
@@ -177,6 +191,13 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
      * Text Node for optional socket status
      */
     public TextNode displaySocketText;
+
+    /*
+     * Status row contents: number of connections last reported, and
+     * remote scoreboard latency (see updateStatusLatency()), or null
+     */
+    private int statusConnections = 0;
+    private String statusLatency = null;
     /*
      * These are implementation specific variables.  They must be allocated
      * in the constructor of an implementing class of this abstract class.
@@ -269,6 +290,13 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
      */
     private Map<String, Field> updateVariableMap;
 
+    /*
+     * The updatable scoreboard variables indexed by their update variable
+     * ID (see XMLSpec.getUpdateVariableId()), so that an inbound update is
+     * dispatched with a single array lookup.  Defined in init();
+     */
+    private DisplayableWithDigits[] updateVariables;
+
     private static String ExceptionStackTraceAsString(Exception e) {
         StringWriter sw = new StringWriter();
         e.printStackTrace(new PrintWriter(sw));
@@ -297,14 +325,6 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
 
         if (!remoteDisplay) {
             clockTimer = new Timer(FxConstants.instance().ONE_TENTH_SECOND);
-            homePenalty1Timer = new Timer(
-                    FxConstants.instance().ONE_TENTH_SECOND);
-            guestPenalty1Timer = new Timer(
-                    FxConstants.instance().ONE_TENTH_SECOND);
-            homePenalty2Timer = new Timer(
-                    FxConstants.instance().ONE_TENTH_SECOND);
-            guestPenalty2Timer = new Timer(
-                    FxConstants.instance().ONE_TENTH_SECOND);
         }
     }
 
@@ -354,6 +374,34 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
         }
 
         positionNodes();
+        /*
+         * Populate updateVariables after positionNodes() as the horn is
+         * created there.
+         */
+        updateVariables =
+                new DisplayableWithDigits[XMLSpec.UpdateVariableNames.size()];
+        for (int id = 0; id < updateVariables.length; id++) {
+            updateVariables[id] =
+                    lookupUpdateVariable(XMLSpec.UpdateVariableNames.get(id));
+            if (remoteDisplay && updateVariables[id] != null) {
+                updateVariables[id].setRemote(true);
+            }
+        }
+        /*
+         * Record the initial state of every update variable (other than
+         * the horn, which is an event) so snapshots are complete from
+         * the start.
+         */
+        if (!remoteDisplay) {
+            for (DisplayableWithDigits updateVar : updateVariables) {
+                if (updateVar != null && updateVar != horn) {
+                    updateVar.sendCurrentValue();
+                }
+            }
+            if (Globals.instance().journalFile != null) {
+                openJournal();
+            }
+        }
         waterpoloScoreboardXMLOutput = new WaterpoloScoreboardXMLOutput(
                 new ScoreboardOutputInterfaceImpl());
         setOnKeyPressed((KeyEvent ke) -> {
@@ -448,17 +496,58 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
             mouseBlocker.setHeight(controlRowOffset);
             mouseBlocker.setVisible(false);
             getChildren().add(mouseBlocker);
-            if (Globals.instance().useIPSocket) {
+            if (Globals.instance().useLoopback) {
+                FxGlobals.instance().transports.add(
+                        LoopbackTransport.instance());
+            } else if (Globals.instance().useIPSocket &&
+                    Globals.instance().useSelectorServer) {
+                FxGlobals.instance().selectorSocketWriter
+                        = new FxSelectorSocketWriter(2011,
+                                Globals.instance().debugFlags);
+                FxGlobals.instance().transports.add(
+                        FxGlobals.instance().selectorSocketWriter);
+                NetworkThreads.start(FxGlobals.instance().selectorSocketWriter,
+                        "FxSelectorSocketWriter");
+            } else if (Globals.instance().useIPSocket) {
                 FxGlobals.instance().multipleSocketWriter
                         = new FxMultipleSocketWriter(2011,
                                 Globals.instance().debugFlags);
-                new Thread(FxGlobals.instance().multipleSocketWriter).start();
+                NetworkThreads.start(FxGlobals.instance().multipleSocketWriter,
+                        "FxMultipleSocketWriter");
             } else {
                 FxGlobals.instance().multicastWriter
                         = new FxMulticastWriter(Globals.instance().sessionAddr,
                                 Globals.instance().port,
                                 Globals.instance().debugFlags);
-                new Thread(FxGlobals.instance().multicastWriter).start();
+                NetworkThreads.start(FxGlobals.instance().multicastWriter,
+                        "FxMulticastWriter");
+                /*
+                 * Multicast datagrams may be lost, so periodically send
+                 * the full scoreboard state.
+                 */
+                UpdateBatcher.instance().startSnapshots(
+                        FxConstants.instance().SNAPSHOT_INTERVAL);
+            }
+            if (Globals.instance().webPort > 0) {
+                try {
+                    FxGlobals.instance().webGateway =
+                            new FxWebGateway(Globals.instance().webPort);
+                    FxGlobals.instance().webGateway.start();
+                    FxGlobals.instance().transports.add(
+                            FxGlobals.instance().webGateway);
+                } catch (IOException e) {
+                    LOGGER.severe(ExceptionStackTraceAsString(e));
+                }
+            }
+            if (Globals.instance().sharedStateFile != null) {
+                try {
+                    FxGlobals.instance().sharedStateTable =
+                            SharedStateTable.create(Paths.get(
+                                    Globals.instance().sharedStateFile),
+                                    XMLSpec.UpdateVariableNames.size());
+                } catch (IOException e) {
+                    LOGGER.severe(ExceptionStackTraceAsString(e));
+                }
             }
         } else {
             setupRemoteDisplay();
@@ -650,8 +739,7 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
             hornButton.setLayoutY(controlRowOffset);
             hornButton.setLayoutX(horizontalBorder);
             hornButton.setOnMouseEntered((MouseEvent event) -> {
-                if (horn.getMediaPlayer().getStatus()
-                        == MediaPlayer.Status.PLAYING) {
+                if (horn.isPlaying()) {
                     hornButton.setTextColor(Color.BLUE);
                 } else {
                     hornButton.setTextColor(Color.RED);
@@ -670,13 +758,21 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
                 } else {
                     hornButton.setTextColor(Color.GRAY);
                 }
-                horn.getMediaPlayer().stop();
+                long lead = hornLead();
+                if (lead > 0) {
+                    long at = System.nanoTime() + lead;
+                    horn.stopAt(at);
+                    horn.sendMessageToSocketAt("horn",
+                            Constants.instance().HORN_OFF, at);
+                    return;
+                }
+                horn.stop();
                 /*
                 * Send out a packet to turn off the horn.  If the entire
                 * media file has not played, this will stop it prematurely
                  */
-                horn.sendMessageToSocket("horn", String.valueOf(
-                        Constants.instance().HORN_OFF));
+                horn.sendMessageToSocket("horn",
+                        Constants.instance().HORN_OFF);
             });
         }
         /*
@@ -714,10 +810,6 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
                 mouseBlocker.setVisible(true);
             } else {
                 startStopButton.setContent("Start");
-                homePenalty1Timer.stop();
-                homePenalty2Timer.stop();
-                guestPenalty1Timer.stop();
-                guestPenalty2Timer.stop();
                 mouseBlocker.setVisible(false);
             }
         });
@@ -736,9 +828,16 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
             quitButton.setTextColor(Color.GRAY);
         });
         quitButton.setOnMouseClicked((MouseEvent event) -> {
-            if (Globals.instance().useIPSocket) {
+            for (UpdateTransport transport :
+                    FxGlobals.instance().transports) {
+                transport.shutdown();
+            }
+            if (FxGlobals.instance().journal != null) {
+                FxGlobals.instance().journal.close();
+            }
+            if (FxGlobals.instance().multipleSocketWriter != null) {
                 FxGlobals.instance().multipleSocketWriter.shutdown();
-            } else {
+            } else if (FxGlobals.instance().multicastWriter != null) {
                 FxGlobals.instance().multicastWriter.close();
             }
             Platform.exit();
@@ -770,6 +869,9 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
                     sb.append("s");
                 }
                 sb.append(")");
+                if (statusLatency != null) {
+                    sb.append("  ").append(statusLatency);
+                }
             }
         } else {
             sb.append("IP Multicast ")
@@ -798,7 +900,29 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
         }
     }
 
+    /*
+     * Shows the round-trip latency of the remote scoreboards (in
+     * milliseconds, negative if unknown) in the status row, with
+     * -StatusRow:latency
+     */
+    public void updateStatusLatency(long minMillis, long avgMillis,
+            long maxMillis, int lagging) {
+        StringBuilder sb = new StringBuilder("Latency ");
+        if (avgMillis < 0) {
+            sb.append("n/a");
+        } else {
+            sb.append(minMillis).append("/").append(avgMillis).append("/")
+                    .append(maxMillis).append(" ms");
+        }
+        if (lagging > 0) {
+            sb.append("  (").append(lagging).append(" lagging)");
+        }
+        statusLatency = new String(sb);
+        updateStatusRow(statusConnections);
+    }
+
     public void updateStatusRow(int numConnections) {
+        statusConnections = numConnections;
         String displaySocketStr = updateStatusString(numConnections);
         if (displaySocketText != null) {
             displaySocketText.setContent(displaySocketStr);
@@ -808,6 +932,33 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
         }
     }
 
+    /*
+     * Opens the master's journal, first restoring the state it recorded
+     * with -RecoverJournal.  Clocks are restored stopped.
+     */
+    private void openJournal() {
+        Path path = Paths.get(Globals.instance().journalFile);
+        try {
+            if (Globals.instance().recoverJournal) {
+                UpdateStateTable state = new UpdateStateTable();
+                FxGlobals.instance().journal = GameJournal.recover(path,
+                        updateVariables.length, state);
+                for (int id = 0; id < updateVariables.length; id++) {
+                    DisplayableWithDigits updateVar = updateVariables[id];
+                    if (updateVar != null && updateVar != horn &&
+                            state.isKnown(id)) {
+                        updateVar.setOverallValue(state.get(id));
+                    }
+                }
+            } else {
+                FxGlobals.instance().journal = GameJournal.create(path,
+                        updateVariables.length);
+            }
+        } catch (IOException e) {
+            LOGGER.severe(ExceptionStackTraceAsString(e));
+        }
+    }
+
     /*
      * Remote display methods
      */
@@ -816,17 +967,24 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
                 new ScoreboardInputInterfaceImpl());
         waterpoloScoreboardXMLInput.readConfigFile();
         waterpoloScoreboardXMLInput.initStringXMLDocumentBuilder();
-        if (Globals.instance().useIPSocket) {
+        if (Globals.instance().useLoopback) {
+            LoopbackTransport.instance().connect(this);
+        } else if (Globals.instance().sharedStateFile != null) {
+            FxGlobals.instance().sharedStateReader = new SharedStateReader(
+                    this, Paths.get(Globals.instance().sharedStateFile));
+        } else if (Globals.instance().useIPSocket) {
             FxGlobals.instance().socketReader = new FxSocketReader(this,
                     Globals.instance().host, Globals.instance().port,
                     Globals.instance().debugFlags);
             FxGlobals.instance().socketReader.connect();
         } else {
             FxGlobals.instance().multicastReader
-                    = new FxMulticastReader(Globals.instance().sessionAddr,
+                    = new FxMulticastReader(this,
+                            Globals.instance().sessionAddr,
                             Globals.instance().port,
                             Globals.instance().debugFlags);
-            new Thread(FxGlobals.instance().multicastReader).start();
+            NetworkThreads.start(FxGlobals.instance().multicastReader,
+                    "FxMulticastReader");
         }
     }
 
@@ -835,6 +993,21 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
     }
 
     private DisplayableWithDigits getUpdateVariable(String name) {
+        return getUpdateVariable(XMLSpec.getUpdateVariableId(name));
+    }
+
+    private DisplayableWithDigits getUpdateVariable(int id) {
+        if (id < 0 || id >= updateVariables.length) {
+            return null;
+        }
+        return updateVariables[id];
+    }
+
+    /*
+     * Resolves an update variable name to its scoreboard object.  Only
+     * used by init() to populate updateVariables.
+     */
+    private DisplayableWithDigits lookupUpdateVariable(String name) {
         if (name.equals(WaterpoloScoreboardXMLSpec.NAME_clock)) {
             return clock;
         } else if (name.equals(WaterpoloScoreboardXMLSpec.NAME_homeShotsOnGoal)) {
@@ -925,17 +1098,9 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
         Animation.Status status = clockTimer.getTimeline().getStatus();
         if (status == Animation.Status.RUNNING) {
             clock.getTimer().stop();
-            homePenalty1Timer.stop();
-            homePenalty2Timer.stop();
-            guestPenalty1Timer.stop();
-            guestPenalty2Timer.stop();
         } else {
             if (clock.getOverallValue() != 0) {
                 clock.getTimer().start();
-                homePenalty1Timer.start();
-                homePenalty2Timer.start();
-                guestPenalty1Timer.start();
-                guestPenalty2Timer.start();
             }
         }
     }
@@ -945,20 +1110,39 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
         if (!Globals.instance().useHorn) {
             return;
         }
-        /*
-         * Call stop() method first to insure media file is played from
-         * the beginning every time. 
-         */
-        horn.getMediaPlayer().stop();
-        horn.getMediaPlayer().play();
+        long lead = hornLead();
+        if (lead > 0) {
+            long at = System.nanoTime() + lead;
+            horn.soundAt(at);
+            horn.sendMessageToSocketAt("horn",
+                    Constants.instance().HORN_ON, at);
+            return;
+        }
+        horn.sound();
         /*
          * For this method, play the entire media file associated with the horn,
          * where the assumption is the length of the sound is a few seconds.
          * There is no need to send out a packet to stop the horn as the
          * player will stop automatically after completion.
          */
-        horn.sendMessageToSocket("horn", String.valueOf(
-                Constants.instance().HORN_ON));
+        horn.sendMessageToSocket("horn",
+                Constants.instance().HORN_ON);
+    }
+
+    /*
+     * Time (nanoseconds) by which the master schedules the horn ahead, so
+     * that the remote scoreboards get the horn frame in time to sound it
+     * together with the master (see TimeSync), or 0 to sound it right
+     * away.  Only the remote scoreboards of the selector server can tell
+     * the master's time.
+     */
+    private long hornLead() {
+        if (remoteDisplay || Globals.instance().useLoopback ||
+                !Globals.instance().useIPSocket ||
+                !Globals.instance().useSelectorServer) {
+            return 0;
+        }
+        return Globals.instance().hornLead * 1000000L;
     }
 
     private void processKeyEvent(KeyCode keyCode) {
@@ -971,13 +1155,54 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
 
     /* 
  ****************************************************************************
- *  XMLReaderInterface implementation method                                *
+ *  XMLReaderInterface implementation methods                               *
  ****************************************************************************/
     @Override
     public void handleUpdate(String msg) {
         waterpoloScoreboardXMLInput.readUpdateStr(msg);
     }
 
+    @Override
+    public void handleUpdate(int id, int overallValue, long masterTime) {
+        waterpoloScoreboardXMLInput.readUpdate(id, overallValue, masterTime);
+    }
+
+    @Override
+    public void flushUpdates() {
+        waterpoloScoreboardXMLInput.flushUpdates();
+    }
+
+    /**
+     * Returns the IDs of the update variables shown on this scoreboard,
+     * which a remote display subscribes to so that the master only sends
+     * it those (see SubscriptionFilter).  A variable is shown if it has
+     * been added to the scene graph, be it by positionNodes() or by the
+     * configuration file.
+     */
+    public int[] getRenderedVariableIds() {
+        int[] ids = new int[updateVariables.length];
+        int count = 0;
+        for (int id = 0; id < updateVariables.length; id++) {
+            if (isRendered(updateVariables[id])) {
+                ids[count++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private boolean isRendered(DisplayableWithDigits updateVar) {
+        if (updateVar == null) {
+            return false;
+        }
+        for (Parent parent = updateVar.getParent(); parent != null;
+                parent = parent.getParent()) {
+            if (parent == this) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /*   
  ****************************************************************************
  *  WaterpoloScorboardInputInterface implementation methods                    *
@@ -1123,21 +1348,68 @@ public abstract class WaterpoloScoreboard extends ScoreboardWithClock
 
         @Override
         public void updateVariable(String name, String overallValueStr) {
-            DisplayableWithDigits updateVar = getUpdateVariable(name);
-            int overallValue = Integer.parseInt(overallValueStr);
+            updateVariable(name, Integer.parseInt(overallValueStr));
+        }
+
+        @Override
+        public void updateVariable(String name, int overallValue) {
+            updateVariableById(XMLSpec.getUpdateVariableId(name),
+                    overallValue);
+        }
+
+        @Override
+        public void updateClockById(int id, int overallValue,
+                boolean running) {
+            DisplayableWithDigits updateVar = getUpdateVariable(id);
+            if (updateVar instanceof Clock) {
+                ((Clock) updateVar).setRunningViaUpdate(overallValue, running);
+            } else if (updateVar != null) {
+                updateVar.setOverallValueViaUpdate(overallValue);
+            }
+        }
+
+        @Override
+        public void updateVariableById(int id, int overallValue) {
+            DisplayableWithDigits updateVar = getUpdateVariable(id);
             if (updateVar != null) {
                 if (updateVar == horn) {
                     if (overallValue == Constants.instance().HORN_ON) {
                         soundHorn();
                     } else if (overallValue == Constants.instance().HORN_OFF) {
-                        horn.getMediaPlayer().stop();
+                        horn.stop();
                     }
                 } else {
-                    updateVar.setOverallValueViaUpdate(overallValueStr);
+                    updateVar.setOverallValueViaUpdate(overallValue);
                 }
             }
         }
 
+        /*
+         * The horn is the only variable sent with a time, which is
+         * converted to this scoreboard's clock if the master's is known.
+         * Otherwise it sounds right away.
+         */
+        @Override
+        public void updateVariableAt(int id, int overallValue,
+                long masterTime) {
+            DisplayableWithDigits updateVar = getUpdateVariable(id);
+            if (updateVar != horn) {
+                updateVariableById(id, overallValue);
+                return;
+            }
+            if (!Globals.instance().useHorn) {
+                return;
+            }
+            long at = TimeSync.instance().isSynchronized() ?
+                    TimeSync.instance().toLocalTime(masterTime) :
+                    System.nanoTime();
+            if (overallValue == Constants.instance().HORN_ON) {
+                horn.soundAt(at);
+            } else if (overallValue == Constants.instance().HORN_OFF) {
+                horn.stopAt(at);
+            }
+        }
+
         @Override
         public void resolveXlocations() {
             for (String varName : XMLSpec.ConfigVariableNames) {
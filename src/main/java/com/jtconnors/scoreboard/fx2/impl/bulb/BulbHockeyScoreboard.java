@@ -83,13 +83,13 @@ public class BulbHockeyScoreboard extends HockeyScoreboard {
                 FxConstants.instance().DEFAULT_SECONDARY_COLOR, smallDigitSize);
         guestShotsOnGoal = new BulbTwoDigit("guestShotsOnGoal",
                 FxConstants.instance().DEFAULT_SECONDARY_COLOR, smallDigitSize);
-        homePenalty1 = new BulbPenalty("homePenalty1", homePenalty1Timer,
+        homePenalty1 = new BulbPenalty("homePenalty1", clockTimer,
                 FxConstants.instance().DEFAULT_DIGIT_COLOR, mediumDigitSize);
-        guestPenalty1 = new BulbPenalty("guestPenalty1", guestPenalty1Timer,
+        guestPenalty1 = new BulbPenalty("guestPenalty1", clockTimer,
                 FxConstants.instance().DEFAULT_DIGIT_COLOR, mediumDigitSize);
-        homePenalty2 = new BulbPenalty("homePenalty2", homePenalty2Timer,
+        homePenalty2 = new BulbPenalty("homePenalty2", clockTimer,
                 FxConstants.instance().DEFAULT_DIGIT_COLOR, mediumDigitSize);
-        guestPenalty2 = new BulbPenalty("guestPenalty2", guestPenalty2Timer,
+        guestPenalty2 = new BulbPenalty("guestPenalty2", clockTimer,
                 FxConstants.instance().DEFAULT_DIGIT_COLOR, mediumDigitSize);
         /*
          * End implementation specific section.
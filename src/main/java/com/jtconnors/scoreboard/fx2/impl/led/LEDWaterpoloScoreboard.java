@@ -83,13 +83,13 @@ public class LEDWaterpoloScoreboard extends WaterpoloScoreboard {
                 FxConstants.instance().DEFAULT_SECONDARY_COLOR, smallDigitSize);
         guestShotsOnGoal = new LEDTwoDigit("guestShotsOnGoal",
                 FxConstants.instance().DEFAULT_SECONDARY_COLOR, smallDigitSize);
-        homePenalty1 = new LEDPenalty("homePenalty1", homePenalty1Timer,
+        homePenalty1 = new LEDPenalty("homePenalty1", clockTimer,
                 FxConstants.instance().DEFAULT_DIGIT_COLOR, mediumDigitSize);
-        guestPenalty1 = new LEDPenalty("guestPenalty1", guestPenalty1Timer,
+        guestPenalty1 = new LEDPenalty("guestPenalty1", clockTimer,
                 FxConstants.instance().DEFAULT_DIGIT_COLOR, mediumDigitSize);
-        homePenalty2 = new LEDPenalty("homePenalty2", homePenalty2Timer,
+        homePenalty2 = new LEDPenalty("homePenalty2", clockTimer,
                 FxConstants.instance().DEFAULT_DIGIT_COLOR, mediumDigitSize);
-        guestPenalty2 = new LEDPenalty("guestPenalty2", guestPenalty2Timer,
+        guestPenalty2 = new LEDPenalty("guestPenalty2", clockTimer,
                 FxConstants.instance().DEFAULT_DIGIT_COLOR, mediumDigitSize);
         /*
          * End implementation specific section.
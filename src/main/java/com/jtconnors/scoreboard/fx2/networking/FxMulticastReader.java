@@ -34,25 +34,49 @@ package com.jtconnors.scoreboard.fx2.networking;
 import javafx.application.Platform;
 import com.jtconnors.socket.MulticastConnection;
 import com.jtconnors.scoreboard.common.Globals;
+import com.jtconnors.scoreboard.common.XMLReaderInterface;
 import com.jtconnors.socket.DebugFlags;
 import com.jtconnors.socket.Constants;
 
 public class FxMulticastReader extends MulticastConnection {
+
+    /*
+     * Used when no XMLReaderInterface is supplied, hands messages to the
+     * hockey scoreboard registered in Globals.
+     */
+    private static class GlobalScoreboardReader implements XMLReaderInterface {
+
+        @Override
+        public void handleUpdate(String msg) {
+            Globals.instance().hockeyScoreboardRef.handleUpdate(msg);
+        }
+
+        @Override
+        public void handleUpdate(int id, int overallValue, long masterTime) {
+            Globals.instance().hockeyScoreboardRef.handleUpdate(id,
+                    overallValue, masterTime);
+        }
+
+        @Override
+        public void flushUpdates() {
+            Globals.instance().hockeyScoreboardRef.flushUpdates();
+        }
+    }
+
+    private final InboundUpdateQueue inboundQueue;
     
     /**
      * Called whenever a message is read from the socket.
-     * In JavaFX 2.0, this method must be run on the
-     * main thread.  This is accomplished by the Platform.runLater() call
-     * which utilizes the {@code Runnable} interface, simplified by the
-     * lambda expression used in this method.
+     * In JavaFX 2.0, messages must be handled on the
+     * main thread.  Rather than a Platform.runLater() call per message,
+     * the line is queued and read on the main thread at the next pulse
+     * (see InboundUpdateQueue).
      * Failure to do so *will* result in strange errors and exceptions.
      * @param line Line of text read from the socket.
      */
     @Override
     public void onMessage(final String line) {
-        Platform.runLater(() -> {
-            Globals.instance().hockeyScoreboardRef.handleUpdate(line);
-        });
+        inboundQueue.offer(line);
     }
 
     /**
@@ -73,17 +97,26 @@ public class FxMulticastReader extends MulticastConnection {
     }
     
     public FxMulticastReader() {
-        super(Constants.instance().DEFAULT_SESSION_ADDR,
+        this(Constants.instance().DEFAULT_SESSION_ADDR,
                 Constants.instance().DEFAULT_PORT,
                 DebugFlags.instance().DEBUG_NONE);
     }
 
     public FxMulticastReader(int portNum) {
-        super(Constants.instance().DEFAULT_SESSION_ADDR, portNum,
+        this(Constants.instance().DEFAULT_SESSION_ADDR, portNum,
                 DebugFlags.instance().DEBUG_NONE);
     }
 
     public FxMulticastReader(String addr, int portNum, int debugFlags) {
+        this(new GlobalScoreboardReader(), addr, portNum, debugFlags);
+    }
+
+    /*
+     * Must be constructed on the JavaFX application thread
+     */
+    public FxMulticastReader(XMLReaderInterface reader, String addr,
+            int portNum, int debugFlags) {
         super(addr, portNum, debugFlags);
+        inboundQueue = new InboundUpdateQueue(reader);
     }
 }
@@ -33,8 +33,15 @@ package com.jtconnors.scoreboard.fx2.networking;
 
 import com.jtconnors.socket.MultipleSocketWriter;
 import com.jtconnors.scoreboard.common.Globals;
+import com.jtconnors.scoreboard.fx2.framework.UpdateBatcher;
 
 public class FxMultipleSocketWriter extends MultipleSocketWriter {
+
+    /*
+     * Number of listeners seen by the last call to onClosedStatus().
+     * Only accessed on the JavaFX application thread.
+     */
+    private int lastNumberOfListeners = 0;
     
     /**
      * Called whenever a message is read from the socket.
@@ -60,9 +67,20 @@ public class FxMultipleSocketWriter extends MultipleSocketWriter {
     @Override
     public void onClosedStatus(boolean isClosed) {
         javafx.application.Platform.runLater(() -> {
-            Globals.instance().socketClosed = getNumberOfListeners() <= 0;
+            int numberOfListeners = getNumberOfListeners();
+            Globals.instance().socketClosed = numberOfListeners <= 0;
             Globals.instance()
-                    .hockeyScoreboardRef.updateStatusRow(getNumberOfListeners());
+                    .hockeyScoreboardRef.updateStatusRow(numberOfListeners);
+            /*
+             * A remote display just connected.  Send it the full
+             * scoreboard state rather than waiting for each variable to
+             * change.  Writes go out to every listener, but a snapshot is
+             * harmless to the ones that are already up to date.
+             */
+            if (numberOfListeners > lastNumberOfListeners) {
+                UpdateBatcher.instance().sendSnapshot();
+            }
+            lastNumberOfListeners = numberOfListeners;
         });
     }
     public FxMultipleSocketWriter () {
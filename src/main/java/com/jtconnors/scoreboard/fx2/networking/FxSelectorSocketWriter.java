@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.networking;
+
+import javafx.application.Platform;
+import com.jtconnors.socket.DebugFlags;
+import com.jtconnors.scoreboard.common.Globals;
+import com.jtconnors.scoreboard.fx2.framework.UpdateBatcher;
+
+/*
+ * A non-blocking alternative to FxMultipleSocketWriter, selected with the
+ * -SocketServer:selector command-line switch, for masters serving hundreds
+ * of remote scoreboards over IP sockets (see SelectorSocketWriter).
+ *
+ * Snapshots are built by UpdateBatcher.snapshotStr() on the JavaFX
+ * application thread, the same thread updates are posted from, so no
+ * update can slip in between building a snapshot and queueing it.
+ */
+public class FxSelectorSocketWriter extends SelectorSocketWriter {
+
+    @Override
+    protected void onSnapshotNeeded(Connection connection) {
+        Platform.runLater(() -> {
+            sendSnapshot(connection, UpdateBatcher.instance().snapshotStr(),
+                    UpdateBatcher.instance().snapshotClockStrs());
+        });
+    }
+
+    @Override
+    protected void onLatencyChanged(long minNanos, long avgNanos,
+            long maxNanos, int lagging) {
+        if (!Globals.instance().statusRowLatency) {
+            return;
+        }
+        Platform.runLater(() -> {
+            Globals.instance().hockeyScoreboardRef.updateStatusLatency(
+                    minNanos / 1000000, avgNanos / 1000000,
+                    maxNanos / 1000000, lagging);
+        });
+    }
+
+    @Override
+    protected void onListenersChanged(int numberOfListeners) {
+        Platform.runLater(() -> {
+            Globals.instance().socketClosed = numberOfListeners <= 0;
+            Globals.instance()
+                    .hockeyScoreboardRef.updateStatusRow(numberOfListeners);
+        });
+    }
+
+    public FxSelectorSocketWriter(int listenerPort) {
+        super(listenerPort, DebugFlags.instance().DEBUG_NONE);
+    }
+
+    public FxSelectorSocketWriter(int listenerPort, int debugFlags) {
+        super(listenerPort, debugFlags);
+    }
+}
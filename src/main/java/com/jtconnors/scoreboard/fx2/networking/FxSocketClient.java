@@ -42,6 +42,8 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import com.jtconnors.scoreboard.fx2.framework.BinarySpec;
+import com.jtconnors.scoreboard.fx2.framework.TimeSync;
 
 public class FxSocketClient extends GenericSocket
         implements SocketListener {
@@ -51,6 +53,7 @@ public class FxSocketClient extends GenericSocket
 
     public String host;
     private SocketListener fxListener;
+    private InboundUpdateQueue inboundQueue;
 
     /**
      * Called whenever a message is read from the socket.  In
@@ -59,10 +62,31 @@ public class FxSocketClient extends GenericSocket
      * which utilizes the {@code Runnable} interface, simplified by the
      * lambda expression used in this method.
      * Failure to do so *will* result in strange errors and exceptions.
+     * If an InboundUpdateQueue was supplied, the line is queued instead,
+     * and read on the main thread at the next pulse.  Pings from the
+     * master are answered right away, on the reading thread, and followed
+     * by a time request, whose reply is handed to TimeSync.
      * @param line Line of text read from the socket.
      */
     @Override
     public void onMessage(final String line) {
+        long now = System.nanoTime();
+        if (BinarySpec.isHeartbeat(line, BinarySpec.TYPE_PING)) {
+            sendMessage(BinarySpec.heartbeatStr(BinarySpec.TYPE_PONG,
+                    BinarySpec.getTimestamp(line)));
+            sendMessage(BinarySpec.heartbeatStr(BinarySpec.TYPE_TIME_REQUEST,
+                    System.nanoTime()));
+            return;
+        }
+        if (BinarySpec.isTimeReply(line)) {
+            TimeSync.instance().addSample(BinarySpec.getTimestamp(line),
+                    BinarySpec.getReplyTimestamp(line), now);
+            return;
+        }
+        if (inboundQueue != null) {
+            inboundQueue.offer(line);
+            return;
+        }
         javafx.application.Platform.runLater(() -> {
             fxListener.onMessage(line);
         });
@@ -132,6 +156,13 @@ public class FxSocketClient extends GenericSocket
         this.fxListener = fxListener;
     }
 
+    public FxSocketClient(SocketListener fxListener,
+            InboundUpdateQueue inboundQueue,
+            String host, int port, int debugFlags) {
+        this(fxListener, host, port, debugFlags);
+        this.inboundQueue = inboundQueue;
+    }
+
     public FxSocketClient(SocketListener fxListener) {
         this(fxListener, 
                 com.jtconnors.socket.Constants.instance().DEFAULT_HOST,
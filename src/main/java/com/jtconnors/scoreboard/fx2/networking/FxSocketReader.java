@@ -34,8 +34,15 @@ package com.jtconnors.scoreboard.fx2.networking;
 import com.jtconnors.socket.SocketListener;
 import com.jtconnors.socket.DebugFlags;
 import com.jtconnors.socket.Constants;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import com.jtconnors.scoreboard.fx2.framework.BinarySpec;
+import com.jtconnors.scoreboard.fx2.framework.TimeSync;
 import com.jtconnors.scoreboard.fx2.framework.hockey.HockeyScoreboard;
 import com.jtconnors.scoreboard.fx2.framework.waterpolo.WaterpoloScoreboard;
 import com.jtconnors.scoreboard.common.Globals;
@@ -48,20 +55,46 @@ public class FxSocketReader {
     private HockeyScoreboard hockeyScoreboard;
     private WaterpoloScoreboard waterpoloScoreboard;
     private FxSocketClient fxSocketClient;
+    private InboundUpdateQueue inboundQueue;
     private String host;
     private int port;
     private int debugFlags;
+
+    /*
+     * Reconnect attempts back off exponentially, starting at
+     * RECONNECT_INITIAL_DELAY and capped at RECONNECT_MAX_DELAY
+     * (milliseconds).  Jitter is added so that a room full of remote
+     * displays don't all hit the master at the same instant after it
+     * restarts.
+     */
+    private static final long RECONNECT_INITIAL_DELAY = 500;
+    private static final long RECONNECT_MAX_DELAY = 30000;
+
+    /*
+     * Reconnects are scheduled on this executor so that the JavaFX
+     * application thread never waits on them, and the remote display keeps
+     * rendering its last known state in the meantime.  reconnectAttempts
+     * and pendingReconnect are only accessed on the JavaFX thread.
+     */
+    private final ScheduledExecutorService reconnectExecutor =
+            Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread thread = new Thread(r, "FxSocketReader-reconnect");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private ScheduledFuture<?> pendingReconnect;
+    private int reconnectAttempts = 0;
     
 
     class FxSocketReaderListener implements SocketListener {
 
         /*
-         * This method is already on the main thread via FxSocketClient's
-         * call to onMessage().
+         * Messages are handed to the scoreboard by inboundQueue, so this
+         * method is not called.
          */
         @Override
         public void onMessage(String msg) {
-            hockeyScoreboard.handleUpdate(msg);
+            inboundQueue.offer(msg);
         }
 
         /*
@@ -81,19 +114,56 @@ public class FxSocketReader {
                 hockeyScoreboard.updateStatusRow(isClosed ? 0 : 1);   
             }
             if (isClosed) {
-                try {
-                    Thread.sleep(3000);
-                    connect();
-                } catch (InterruptedException e) {
-                }
+                TimeSync.instance().reset();
+                scheduleReconnect();
+            } else {
+                reconnectAttempts = 0;
+                subscribe();
             }
         }
     }
+
+    /*
+     * Tells the master which variables this display renders, so that it
+     * isn't sent the others.  Masters which don't filter ignore it.
+     */
+    private void subscribe() {
+        int[] ids = (hockeyScoreboard != null) ?
+                hockeyScoreboard.getRenderedVariableIds() :
+                waterpoloScoreboard.getRenderedVariableIds();
+        fxSocketClient.sendMessage(BinarySpec.subscribeStr(ids, ids.length));
+    }
+
+    /*
+     * Schedule a connect() attempt, unless one is already waiting to run.
+     */
+    private void scheduleReconnect() {
+        if (pendingReconnect != null &&
+                pendingReconnect.getDelay(TimeUnit.MILLISECONDS) > 0) {
+            return;
+        }
+        long delay = computeReconnectDelay(reconnectAttempts++);
+        if ((debugFlags & DebugFlags.instance().DEBUG_STATUS) != 0) {
+            LOGGER.log(Level.INFO, "Reconnecting in {0} ms", delay);
+        }
+        pendingReconnect = reconnectExecutor.schedule(this::connect, delay,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Exponential backoff with jitter: the delay is picked at random
+     * between half and all of the backed off delay.
+     */
+    static long computeReconnectDelay(int attempts) {
+        long delay = RECONNECT_INITIAL_DELAY << Math.min(attempts, 16);
+        delay = Math.min(delay, RECONNECT_MAX_DELAY);
+        return (delay / 2) + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
     
 
     public void connect() {
-        fxSocketClient = new FxSocketClient(
-                new FxSocketReaderListener(), host, port, debugFlags);
+        fxSocketClient = new FxSocketClient(new FxSocketReaderListener(),
+                inboundQueue, host, port, debugFlags);
         fxSocketClient.connect();
     }
 
@@ -112,6 +182,7 @@ public class FxSocketReader {
             String host, int port,
             int debugFlags) {
         this.hockeyScoreboard = hockeyScoreboard;
+        this.inboundQueue = new InboundUpdateQueue(hockeyScoreboard);
         this.host = host;
         this.port = port;
         this.debugFlags = debugFlags;
@@ -132,6 +203,7 @@ public class FxSocketReader {
             String host, int port,
             int debugFlags) {
         this.waterpoloScoreboard = waterpoloScoreboard;
+        this.inboundQueue = new InboundUpdateQueue(waterpoloScoreboard);
         this.host = host;
         this.port = port;
         this.debugFlags = debugFlags;
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.networking;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+import com.jtconnors.scoreboard.common.Utils;
+import com.jtconnors.scoreboard.fx2.framework.UpdateBatcher;
+import com.jtconnors.scoreboard.fx2.framework.XMLSpec;
+
+/*
+ * An embedded HTTP server which lets a web browser act as a remote
+ * scoreboard, selected on the master with the -WebPort:PORT command-line
+ * switch.
+ *
+ *     /          a static HTML/JavaScript renderer (scoreboard/web)
+ *     /names     the update variable names, indexed by ID, as JSON
+ *     /events    the update stream as Server-Sent Events
+ *
+ * Each message posted with postUpdate(), in whichever format the master
+ * sends to its other remote scoreboards, becomes a single "data:" event.
+ * The event is encoded once and the same bytes are queued for every
+ * viewer.  The viewer queues are drained by tasks run on virtual threads,
+ * or on a handful of platform threads on older JDKs (see NetworkThreads),
+ * so thousands of viewers are served without a platform thread each.
+ *
+ * As with FxSelectorSocketWriter, a new viewer is first sent a snapshot
+ * of its own, and a viewer whose queue overflows MAX_QUEUED_EVENTS has
+ * its queue replaced by a fresh snapshot.  Writes block, so a viewer
+ * whose write has made no progress for STALL_TIMEOUT is disconnected:
+ * its writer thread is interrupted, which closes the connection (the
+ * response body is written to an interruptible channel) and frees the
+ * thread.  Requests are handled on threads of their own, so stalled
+ * viewers never keep /, /names or /events from answering.
+ */
+public class FxWebGateway implements UpdateTransport {
+
+    private static final Logger LOGGER = Logger.getLogger(
+            FxWebGateway.class.getName());
+
+    private static final String INDEX_RESOURCE = "/scoreboard/web/index.html";
+    private static final int MAX_QUEUED_EVENTS = 256;
+    private static final int WRITER_THREADS = 4;
+    private static final int HANDLER_THREADS = 2;
+    /*
+     * Milliseconds a write may block before the viewer is disconnected
+     */
+    private static final long STALL_TIMEOUT = 10000;
+
+    /*
+     * A browser connected to /events
+     */
+    private class Viewer implements Runnable {
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+        private boolean awaitingSnapshot = true;
+        private boolean scheduled = false;
+        private boolean closed = false;
+        /*
+         * The thread writing to this viewer and when its write started,
+         * while a write is in progress
+         */
+        private Thread writingThread;
+        private long writeStartedAt;
+        private boolean stalled = false;
+
+        Viewer(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+
+        /*
+         * Queues an event for this viewer.  Called on the JavaFX
+         * application thread.
+         */
+        synchronized void offer(byte[] event) {
+            if (closed || awaitingSnapshot) {
+                return;
+            }
+            if (queue.size() >= MAX_QUEUED_EVENTS) {
+                queue.clear();
+                requestSnapshot(this);
+                return;
+            }
+            enqueue(event);
+        }
+
+        /*
+         * Queues a snapshot for this viewer (or nothing, if there is no
+         * state yet), after which updates are queued again.
+         */
+        synchronized void offerSnapshot(byte[] event) {
+            awaitingSnapshot = false;
+            if (!closed && event != null) {
+                enqueue(event);
+            }
+        }
+
+        synchronized void awaitSnapshot() {
+            awaitingSnapshot = true;
+        }
+
+        private void enqueue(byte[] event) {
+            queue.add(event);
+            if (!scheduled) {
+                scheduled = true;
+                writers.execute(this);
+            }
+        }
+
+        /*
+         * Writes the queued events, on a writer thread
+         */
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    byte[] event;
+                    boolean more;
+                    synchronized (this) {
+                        event = queue.poll();
+                        if (event == null) {
+                            scheduled = false;
+                            break;
+                        }
+                        more = !queue.isEmpty();
+                    }
+                    synchronized (this) {
+                        writingThread = Thread.currentThread();
+                        writeStartedAt = System.nanoTime();
+                    }
+                    try {
+                        out.write(event);
+                        if (!more) {
+                            out.flush();
+                        }
+                    } finally {
+                        synchronized (this) {
+                            writingThread = null;
+                        }
+                        /*
+                         * Only interruptStalled() interrupts the thread,
+                         * and only while it writes to this viewer
+                         */
+                        Thread.interrupted();
+                    }
+                    if (isStalled()) {
+                        throw new IOException("stalled");
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /*
+         * Interrupts a write which has been blocked for more than
+         * STALL_TIMEOUT.  Called by the watchdog thread.
+         */
+        synchronized void interruptStalled(long now) {
+            if (writingThread != null &&
+                    now - writeStartedAt > STALL_TIMEOUT * 1000000L) {
+                stalled = true;
+                LOGGER.log(Level.INFO, "Disconnecting web viewer {0}, stalled",
+                        exchange.getRemoteAddress());
+                writingThread.interrupt();
+            }
+        }
+
+        synchronized boolean isStalled() {
+            return stalled;
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+            }
+            if (viewers.remove(this)) {
+                exchange.close();
+                LOGGER.log(Level.INFO, "Web viewer {0} disconnected",
+                        exchange.getRemoteAddress());
+            }
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ExecutorService writers;
+    private final ScheduledExecutorService watchdog;
+    private final Set<Viewer> viewers = ConcurrentHashMap.newKeySet();
+
+    public FxWebGateway(int port) throws IOException {
+        handlers = NetworkThreads.newExecutor("FxWebGateway-handler",
+                HANDLER_THREADS);
+        writers = NetworkThreads.newExecutor("FxWebGateway-writer",
+                WRITER_THREADS);
+        watchdog = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+            Thread thread = new Thread(r, "FxWebGateway-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(handlers);
+        server.createContext("/events", this::handleEvents);
+        server.createContext("/names", this::handleNames);
+        server.createContext("/", this::handleIndex);
+    }
+
+    public void start() {
+        server.start();
+        watchdog.scheduleWithFixedDelay(this::interruptStalledViewers,
+                1, 1, TimeUnit.SECONDS);
+        LOGGER.log(Level.INFO, "Web gateway listening on port {0}",
+                server.getAddress().getPort());
+    }
+
+    @Override
+    public void shutdown() {
+        for (Viewer viewer : viewers) {
+            viewer.close();
+        }
+        server.stop(0);
+        watchdog.shutdownNow();
+        handlers.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private void interruptStalledViewers() {
+        long now = System.nanoTime();
+        for (Viewer viewer : viewers) {
+            viewer.interruptStalled(now);
+        }
+    }
+
+    public int getNumberOfViewers() {
+        return viewers.size();
+    }
+
+    /**
+     * Sends msg to every viewer.  Called on the JavaFX application thread.
+     * @param msg The String message to send
+     */
+    @Override
+    public void postUpdate(String msg) {
+        if (viewers.isEmpty()) {
+            return;
+        }
+        byte[] event = encode(msg);
+        for (Viewer viewer : viewers) {
+            viewer.offer(event);
+        }
+    }
+
+    /*
+     * Encodes msg as a Server-Sent Event.  Update messages are a single
+     * line, so a single "data:" field is enough.
+     */
+    private static byte[] encode(String msg) {
+        return ("data: " + msg + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendEvent(StringBuilder sb, String msg) {
+        sb.append("data: ").append(msg).append("\n\n");
+    }
+
+    private void requestSnapshot(Viewer viewer) {
+        viewer.awaitSnapshot();
+        Platform.runLater(() -> {
+            String snapshot = UpdateBatcher.instance().snapshotStr();
+            if (snapshot == null) {
+                viewer.offerSnapshot(null);
+                return;
+            }
+            /*
+             * The clock frames following the snapshot are queued along
+             * with it, as events of their own
+             */
+            StringBuilder sb = new StringBuilder();
+            appendEvent(sb, snapshot);
+            for (String clockStr :
+                    UpdateBatcher.instance().snapshotClockStrs()) {
+                appendEvent(sb, clockStr);
+            }
+            viewer.offerSnapshot(sb.toString().getBytes(
+                    StandardCharsets.UTF_8));
+        });
+    }
+
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, 0);
+        Viewer viewer = new Viewer(exchange);
+        viewers.add(viewer);
+        LOGGER.log(Level.INFO, "Web viewer {0} connected",
+                exchange.getRemoteAddress());
+        requestSnapshot(viewer);
+    }
+
+    private void handleNames(HttpExchange exchange) throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int id = 0; id < XMLSpec.UpdateVariableNames.size(); id++) {
+            if (id > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(XMLSpec.getUpdateVariableName(id))
+                    .append('"');
+        }
+        sb.append(']');
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        send(exchange, 200, "application/json",
+                sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handleIndex(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (!path.equals("/") && !path.equals("/index.html")) {
+            send(exchange, 404, "text/plain",
+                    "Not found".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        try (InputStream in = getClass().getResourceAsStream(INDEX_RESOURCE)) {
+            if (in == null) {
+                throw new IOException(INDEX_RESOURCE + " not found");
+            }
+            send(exchange, 200, "text/html; charset=utf-8", in.readAllBytes());
+        } catch (IOException e) {
+            LOGGER.info(Utils.ExceptionStackTraceAsString(e));
+            send(exchange, 500, "text/plain",
+                    "Internal error".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status,
+            String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
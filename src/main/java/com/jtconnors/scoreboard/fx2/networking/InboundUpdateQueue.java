@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.networking;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javafx.animation.AnimationTimer;
+import com.jtconnors.scoreboard.common.XMLReaderInterface;
+
+/*
+ * Hands update messages read on a network thread over to the JavaFX
+ * application thread.
+ *
+ * Rather than posting a Platform.runLater() per message, which after a
+ * network hiccup floods the event queue with runnables that each redraw
+ * digits about to be overwritten, messages are put on a lock-free queue
+ * and drained once per pulse by an AnimationTimer.  Each drained message
+ * is read by the XMLReaderInterface, which holds back its updates, and
+ * flushUpdates() is then called once, so each variable is set at most
+ * once per frame with its newest value.
+ */
+public class InboundUpdateQueue {
+
+    private final ConcurrentLinkedQueue<String> queue =
+            new ConcurrentLinkedQueue<>();
+    private final XMLReaderInterface reader;
+
+    private final AnimationTimer drainTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            drain();
+        }
+    };
+
+    /*
+     * Must be constructed on the JavaFX application thread
+     */
+    public InboundUpdateQueue(XMLReaderInterface reader) {
+        this.reader = reader;
+        drainTimer.start();
+    }
+
+    /**
+     * Queues a message for the next pulse.  Safe to call from any thread.
+     * @param msg Line of text read from the socket.
+     */
+    public void offer(String msg) {
+        queue.offer(msg);
+    }
+
+    /**
+     * Reads every queued message and applies the resulting updates.
+     * Called on the JavaFX application thread once per pulse.
+     */
+    private void drain() {
+        String msg = queue.poll();
+        if (msg == null) {
+            return;
+        }
+        while (msg != null) {
+            reader.handleUpdate(msg);
+            msg = queue.poll();
+        }
+        reader.flushUpdates();
+    }
+
+    public void stop() {
+        drainTimer.stop();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.networking;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import com.jtconnors.scoreboard.common.Globals;
+import com.jtconnors.scoreboard.common.XMLReaderInterface;
+import com.jtconnors.scoreboard.fx2.framework.UpdateBatcher;
+
+/*
+ * An UpdateTransport which hands the master's update messages straight to
+ * remote scoreboards running in the same process, selected with
+ * -UseLoopback.  It allows a master and any number of remote scoreboards
+ * to share one JVM, to drive several screens from a single PC, or to
+ * load the update path without kernel networking getting in the way.
+ *
+ * Each remote scoreboard gets an InboundUpdateQueue, exactly as if it had
+ * read the messages from a socket, so they are applied once per pulse
+ * with their updates coalesced.  A remote which connects is first handed
+ * a snapshot of the master's state.
+ *
+ * This class follows the Singleton design pattern, as there is a single
+ * master (see UpdateBatcher) per process.  connect() and disconnect() are
+ * meant to be called on the JavaFX application thread, postUpdate() may
+ * be called from any thread.
+ */
+public class LoopbackTransport implements UpdateTransport {
+
+    private LoopbackTransport() {}
+
+    private static class LazyHolder {
+        private static final LoopbackTransport INSTANCE =
+                new LoopbackTransport();
+    }
+
+    public static LoopbackTransport instance() {
+        return LazyHolder.INSTANCE;
+    }
+
+    /*
+     * A connected remote scoreboard and the queue its messages go on
+     */
+    private static class Remote {
+        final XMLReaderInterface reader;
+        final InboundUpdateQueue queue;
+
+        Remote(XMLReaderInterface reader) {
+            this.reader = reader;
+            this.queue = new InboundUpdateQueue(reader);
+        }
+    }
+
+    private final CopyOnWriteArrayList<Remote> remotes =
+            new CopyOnWriteArrayList<>();
+
+    /**
+     * Starts handing update messages to reader, beginning with a snapshot
+     * of the master's state, if it has any yet.
+     */
+    public void connect(XMLReaderInterface reader) {
+        Remote remote = new Remote(reader);
+        String snapshot = UpdateBatcher.instance().snapshotStr();
+        if (snapshot != null) {
+            remote.queue.offer(snapshot);
+            for (String clockStr :
+                    UpdateBatcher.instance().snapshotClockStrs()) {
+                remote.queue.offer(clockStr);
+            }
+        }
+        remotes.add(remote);
+        listenersChanged();
+    }
+
+    public void disconnect(XMLReaderInterface reader) {
+        for (Remote remote : remotes) {
+            if (remote.reader == reader) {
+                remote.queue.stop();
+                remotes.remove(remote);
+            }
+        }
+        listenersChanged();
+    }
+
+    public int getNumberOfListeners() {
+        return remotes.size();
+    }
+
+    /*
+     * Shows the number of remote scoreboards on the master's status row
+     */
+    private void listenersChanged() {
+        Globals.instance().socketClosed = remotes.isEmpty();
+        if (Globals.instance().hockeyScoreboardRef != null) {
+            Globals.instance().hockeyScoreboardRef.updateStatusRow(
+                    remotes.size());
+        }
+    }
+
+    @Override
+    public void postUpdate(String msg) {
+        for (Remote remote : remotes) {
+            remote.queue.offer(msg);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (Remote remote : remotes) {
+            remote.queue.stop();
+        }
+        remotes.clear();
+    }
+}
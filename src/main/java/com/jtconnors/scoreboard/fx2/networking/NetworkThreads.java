@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.networking;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.jtconnors.scoreboard.common.Globals;
+
+/*
+ * Creates the threads the networking layer runs its connection loops on.
+ *
+ * On a JDK with virtual threads (21 and later) these are virtual threads,
+ * so a master with hundreds of connections doesn't reserve a platform
+ * thread stack for each.  The project is built for Java 11, so the virtual
+ * thread API is looked up reflectively; on older JDKs, or with
+ * -VirtualThreads:false, platform threads are used instead.
+ *
+ * Virtual threads are always daemon threads, so a launcher without a
+ * JavaFX application thread must keep the JVM alive itself.
+ */
+public class NetworkThreads {
+
+    private static final Logger LOGGER = Logger.getLogger(
+            NetworkThreads.class.getName());
+
+    private NetworkThreads() {}
+
+    /*
+     * Thread.ofVirtual(), Thread.Builder.name(String),
+     * Thread.Builder.start(Runnable) and
+     * Executors.newVirtualThreadPerTaskExecutor(), or null if virtual
+     * threads are unavailable.
+     */
+    private static class LazyHolder {
+        private static final Method OF_VIRTUAL;
+        private static final Method BUILDER_NAME;
+        private static final Method BUILDER_START;
+        private static final Method NEW_PER_TASK_EXECUTOR;
+
+        static {
+            Method ofVirtual = null;
+            Method builderName = null;
+            Method builderStart = null;
+            Method newPerTaskExecutor = null;
+            try {
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                builderName = builderClass.getMethod("name", String.class);
+                builderStart = builderClass.getMethod("start", Runnable.class);
+                newPerTaskExecutor = Executors.class.getMethod(
+                        "newVirtualThreadPerTaskExecutor");
+                /*
+                 * Preview releases throw UnsupportedOperationException
+                 * unless preview features are enabled.
+                 */
+                ofVirtual.invoke(null);
+            } catch (ClassNotFoundException | NoSuchMethodException |
+                    IllegalAccessException | InvocationTargetException e) {
+                LOGGER.info("Virtual threads unavailable, " +
+                        "using platform threads");
+                ofVirtual = null;
+            }
+            OF_VIRTUAL = ofVirtual;
+            BUILDER_NAME = builderName;
+            BUILDER_START = builderStart;
+            NEW_PER_TASK_EXECUTOR = newPerTaskExecutor;
+        }
+    }
+
+    /**
+     * Determines if connection loops run on virtual threads
+     */
+    public static boolean useVirtualThreads() {
+        return Globals.instance().useVirtualThreads &&
+                LazyHolder.OF_VIRTUAL != null;
+    }
+
+    /**
+     * Starts runnable on a new thread with the given name
+     */
+    public static Thread start(Runnable runnable, String name) {
+        if (useVirtualThreads()) {
+            try {
+                Object builder = LazyHolder.OF_VIRTUAL.invoke(null);
+                builder = LazyHolder.BUILDER_NAME.invoke(builder, name);
+                return (Thread) LazyHolder.BUILDER_START.invoke(builder,
+                        runnable);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                LOGGER.log(Level.WARNING, "Could not start virtual thread {0}",
+                        name);
+            }
+        }
+        Thread thread = new Thread(runnable, name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Returns an executor which runs each task on a virtual thread of its
+     * own, or one with a pool of nThreads daemon platform threads.
+     */
+    public static ExecutorService newExecutor(String name, int nThreads) {
+        if (useVirtualThreads()) {
+            try {
+                return (ExecutorService)
+                        LazyHolder.NEW_PER_TASK_EXECUTOR.invoke(null);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                LOGGER.log(Level.WARNING,
+                        "Could not create virtual thread executor {0}", name);
+            }
+        }
+        return Executors.newFixedThreadPool(nThreads, (Runnable r) -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,847 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.networking;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.jtconnors.socket.DebugFlags;
+import com.jtconnors.scoreboard.common.Globals;
+import com.jtconnors.scoreboard.common.Utils;
+import com.jtconnors.scoreboard.fx2.framework.BinarySpec;
+import com.jtconnors.scoreboard.fx2.framework.XMLSpec;
+
+/*
+ * A non-blocking server which sends every line of text posted with
+ * postUpdate() to all the remote scoreboards connected to it.  It does not
+ * depend on JavaFX: FxSelectorSocketWriter adapts it to the master, and
+ * SocketRelay to a headless relay.
+ *
+ * A single thread runs a Selector which accepts connections and writes to
+ * all of them.  Each update is encoded once, into a pooled SharedFrame
+ * shared by every connection: a connection only holds a reference to it
+ * and a read-only view with its own position.  Writes never block;
+ * whatever a connection's socket won't take right away stays on that
+ * connection's queue, and is written when the selector reports the socket
+ * writable again, so a slow remote display doesn't hold up the others.
+ *
+ * A remote display may send a subscribe frame naming the variables it
+ * renders (see BinarySpec.subscribeStr()), after which it is only sent
+ * those (see SubscriptionFilter).  Displays which subscribe to the same
+ * variables share the same filtered frames, each update being filtered
+ * and encoded once per distinct subscription.  Messages with nothing
+ * left for a subscription aren't sent, and the sequence numbers of the
+ * messages sent for it are replaced by a count of its own, so that its
+ * displays don't take the dropped messages for lost ones.  The snapshot
+ * and clock frames sent to one of its displays carry the number of the
+ * last message sent for it, and a display changing its subscription is
+ * sent a snapshot to start off the new numbering.  A new subscription
+ * carries on from the number last sent to the display, so that its
+ * snapshot isn't taken for a stale message.  Displays which don't
+ * subscribe are sent everything.
+ *
+ * A remote display that connects is sent a snapshot of the scoreboard
+ * state meant for it alone, which the subclass builds when asked to by
+ * onSnapshotNeeded().  Until the snapshot is queued, updates are not sent
+ * to it, as the snapshot supersedes them.
+ *
+ * The same mechanism keeps a slow display in check.  A connection's queue
+ * is bounded by MAX_QUEUED_BYTES: when an update would overflow it, the
+ * unsent updates are dropped and replaced by a fresh snapshot, which holds
+ * the newest value of every variable.  A display that takes none of its
+ * queued data for STALL_TIMEOUT is disconnected, and left to reconnect.
+ *
+ * Every -Heartbeat interval, a ping frame holding the current time is
+ * queued for every connection (see BinarySpec.heartbeatStr()).  Remote
+ * displays answer with a pong holding the same time, which gives the
+ * round-trip time of each connection, queueing included.  The spread of
+ * round-trip times is reported through onLatencyChanged(), along with
+ * the number of displays which have stopped answering.  Displays follow
+ * their pong with a time request, which is answered with this server's
+ * System.nanoTime() when it was read (see TimeSync).
+ *
+ * postUpdate() and shutdown() may be called from any thread; everything
+ * else happens on the selector thread.
+ */
+public abstract class SelectorSocketWriter
+        implements Runnable, UpdateTransport {
+
+    private static final Logger LOGGER = Logger.getLogger(
+            SelectorSocketWriter.class.getName());
+
+    private static final int READ_BUFFER_SIZE = 512;
+
+    /*
+     * Longest line read from a display, enough for a subscribe frame
+     * naming every variable.
+     */
+    private static final int MAX_LINE_CHARS = 8192;
+
+    /*
+     * Bound on the bytes queued for a single connection
+     */
+    private static final int MAX_QUEUED_BYTES = 64 * 1024;
+
+    /*
+     * Time (milliseconds) a connection with queued data may go without
+     * taking any of it before it is disconnected.  The selector wakes up
+     * at least every SELECT_TIMEOUT to check.
+     */
+    private static final long STALL_TIMEOUT = 10000;
+    private static final long SELECT_TIMEOUT = 1000;
+
+    /*
+     * A display which has answered pings before is considered lagging
+     * once it misses this many in a row.
+     */
+    private static final int MISSED_PINGS_LAGGING = 3;
+
+    /*
+     * State kept for each remote display, only accessed on the selector
+     * thread.
+     */
+    protected static class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        /*
+         * The frames viewed by queue, in the same order
+         */
+        final ArrayDeque<SharedFrame> frames = new ArrayDeque<>();
+        int queuedBytes = 0;
+        boolean awaitingSnapshot = true;
+
+        /*
+         * Time (System.nanoTime()) the socket last took data while some
+         * was left queued, or 0 if the queue was drained since.
+         */
+        long stalledSince = 0;
+        int conflations = 0;
+
+        /*
+         * Round-trip time (nanoseconds) measured by the last pong, or -1
+         * if the display never answered, and the time (System.nanoTime())
+         * anything was last read from it.
+         */
+        long rttNanos = -1;
+        long lastSeen = System.nanoTime();
+
+        /*
+         * Partial line read from the display
+         */
+        final StringBuilder lineBuf = new StringBuilder();
+
+        /*
+         * IDs of the variables the display renders, or null if it is sent
+         * every variable.  Replaced, never modified, as it is used as a key
+         * to share filtered frames.
+         */
+        BitSet subscription = null;
+
+        /*
+         * Sequence number of the last message queued for the display which
+         * carried one, if any has
+         */
+        boolean sequenced = false;
+        int lastSequence = 0;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    /*
+     * A frame waiting to be handed to the connections, or to a single
+     * connection if target is not null.  A null frame for a target tells
+     * it that it has no snapshot coming.  The message the frame was
+     * encoded from is kept for filtering, along with its sequence number
+     * if it carries one.
+     */
+    private static class Outbound {
+        final String msg;
+        final SharedFrame frame;
+        final Connection target;
+        final boolean sequenced;
+        final int sequence;
+
+        Outbound(String msg, SharedFrame frame, Connection target) {
+            this.msg = msg;
+            this.frame = frame;
+            this.target = target;
+            int seq = 0;
+            boolean hasSeq = false;
+            if (msg != null && SubscriptionFilter.isSequenced(msg)) {
+                try {
+                    seq = SubscriptionFilter.getSequence(msg);
+                    hasSeq = true;
+                } catch (NumberFormatException e) {
+                    LOGGER.info(Utils.ExceptionStackTraceAsString(e));
+                }
+            }
+            this.sequenced = hasSeq;
+            this.sequence = seq;
+        }
+    }
+
+    private final int listenerPort;
+    private int debugFlags;
+    private volatile boolean running = true;
+    private volatile Selector selector;
+    private ServerSocketChannel serverChannel;
+    private final ConcurrentLinkedQueue<Outbound> outbound =
+            new ConcurrentLinkedQueue<>();
+    private final ArrayList<Connection> connections = new ArrayList<>();
+    /*
+     * Filtered frames of the Outbound being handed out, by subscription.
+     * A null frame means there is nothing left to send.
+     */
+    private final HashMap<BitSet, SharedFrame> filteredFrames =
+            new HashMap<>();
+    /*
+     * Sequence number of the last message sent for each subscription in
+     * use
+     */
+    private final HashMap<BitSet, Integer> subscriptionSequences =
+            new HashMap<>();
+    private final ByteBuffer readBuffer =
+            ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private volatile int numberOfListeners = 0;
+    private final long heartbeatInterval =
+            Globals.instance().heartbeatInterval * 1000000L;
+    private long lastHeartbeat = System.nanoTime();
+
+    public SelectorSocketWriter(int listenerPort) {
+        this(listenerPort, DebugFlags.instance().DEBUG_NONE);
+    }
+
+    public SelectorSocketWriter(int listenerPort, int debugFlags) {
+        this.listenerPort = listenerPort;
+        this.debugFlags = debugFlags;
+    }
+
+    /**
+     * Sends msg, as a line of text, to every connected remote display.
+     * @param msg The String message to send
+     */
+    @Override
+    public void postUpdate(String msg) {
+        post(new Outbound(msg, SharedFrame.encode(msg), null));
+    }
+
+    /**
+     * Called on the selector thread when connection needs a snapshot.
+     * Implementations build it and pass it to sendSnapshot(), on any
+     * thread, making sure no update is posted in between.
+     */
+    protected abstract void onSnapshotNeeded(Connection connection);
+
+    /**
+     * Called on the selector thread when a remote display connects or
+     * goes away.
+     */
+    protected abstract void onListenersChanged(int numberOfListeners);
+
+    /**
+     * Called on the selector thread after each heartbeat with the
+     * minimum, average and maximum round-trip time (nanoseconds) of the
+     * displays which answer pings, and the number of displays which have
+     * stopped answering.  The times are -1 if no display answers pings.
+     */
+    protected void onLatencyChanged(long minNanos, long avgNanos,
+            long maxNanos, int lagging) {
+    }
+
+    /**
+     * Queues snapshot for connection alone, after which it is sent updates
+     * again.  A null snapshot means there is no state to send yet.
+     */
+    protected void sendSnapshot(Connection connection, String snapshot) {
+        post(new Outbound(snapshot, snapshot == null ? null :
+                SharedFrame.encode(snapshot), connection));
+    }
+
+    /**
+     * Queues snapshot for connection alone, followed by the clock frames
+     * restoring the state of its clocks.
+     */
+    protected void sendSnapshot(Connection connection, String snapshot,
+            List<String> clockStrs) {
+        sendSnapshot(connection, snapshot);
+        if (snapshot != null) {
+            for (String clockStr : clockStrs) {
+                post(new Outbound(clockStr, SharedFrame.encode(clockStr),
+                        connection));
+            }
+        }
+    }
+
+    public int getNumberOfListeners() {
+        return numberOfListeners;
+    }
+
+    /**
+     * Closes every connection and stops the selector thread
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+    }
+
+    /**
+     * Get the set of enabled debug flags as defined by the bit masks in
+     * scoreboard.common.Constants
+     * @return 
+     */
+    public int getDebugFlags() {
+        return debugFlags;
+    }
+
+    public void setDebugFlags(int debugFlags) {
+        this.debugFlags = debugFlags;
+    }
+
+    @Override
+    public void run() {
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.configureBlocking(false);
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.bind(new InetSocketAddress(listenerPort));
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            while (running) {
+                selector.select(SELECT_TIMEOUT);
+                fanOut();
+                closeStalledConnections();
+                heartbeat();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.info(Utils.ExceptionStackTraceAsString(e));
+        } finally {
+            for (Connection connection : new ArrayList<>(connections)) {
+                close(connection);
+            }
+            Outbound frame;
+            while ((frame = outbound.poll()) != null) {
+                if (frame.frame != null) {
+                    frame.frame.release();
+                }
+            }
+            try {
+                if (serverChannel != null) {
+                    serverChannel.close();
+                }
+                if (selector != null) {
+                    selector.close();
+                }
+            } catch (IOException e) {
+                LOGGER.info(Utils.ExceptionStackTraceAsString(e));
+            }
+        }
+    }
+
+    private void post(Outbound frame) {
+        outbound.offer(frame);
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+    }
+
+    /*
+     * Hands the frames posted since the last call to the connections they
+     * are meant for, and writes as much of them as the sockets will take.
+     * Each connection takes a reference to the frames it queues, the
+     * reference taken by postUpdate() and those of the filtered frames
+     * are then given up.
+     */
+    private void fanOut() {
+        Outbound frame;
+        while ((frame = outbound.poll()) != null) {
+            if (frame.target != null) {
+                if (frame.target.channel.isOpen()) {
+                    frame.target.awaitingSnapshot = false;
+                    SharedFrame snapshot = frameFor(frame.target, frame);
+                    if (snapshot != null) {
+                        enqueue(frame.target, snapshot);
+                    }
+                }
+            } else {
+                for (Connection connection : connections) {
+                    if (!connection.awaitingSnapshot) {
+                        SharedFrame update = frameFor(connection, frame);
+                        if (update != null) {
+                            enqueue(connection, update);
+                        }
+                    }
+                }
+            }
+            for (SharedFrame filtered : filteredFrames.values()) {
+                if (filtered != null && filtered != frame.frame) {
+                    filtered.release();
+                }
+            }
+            filteredFrames.clear();
+            if (frame.frame != null) {
+                frame.frame.release();
+            }
+        }
+        writePending();
+    }
+
+    /*
+     * Returns the frame of outbound meant for connection, and keeps track
+     * of the sequence number it carries.
+     */
+    private SharedFrame frameFor(Connection connection, Outbound outbound) {
+        BitSet subscription = connection.subscription;
+        SharedFrame frame =
+                (subscription == null || outbound.frame == null) ?
+                outbound.frame : filteredFrameFor(subscription, outbound);
+        if (frame != null && outbound.sequenced) {
+            connection.sequenced = true;
+            connection.lastSequence = (subscription == null) ?
+                    outbound.sequence : subscriptionSequences.get(subscription);
+        }
+        return frame;
+    }
+
+    /*
+     * Returns the frame of outbound holding only the variables of
+     * subscription, filtering, numbering and encoding it once per
+     * subscription.  Only messages sent to every connection advance the
+     * subscription's sequence.
+     */
+    private SharedFrame filteredFrameFor(BitSet subscription,
+            Outbound outbound) {
+        if (filteredFrames.containsKey(subscription)) {
+            return filteredFrames.get(subscription);
+        }
+        String filtered = SubscriptionFilter.filter(outbound.msg,
+                subscription);
+        if (filtered != null && SubscriptionFilter.isSequenced(filtered)) {
+            int sequence = subscriptionSequences.getOrDefault(subscription, 0);
+            if (outbound.target == null) {
+                sequence++;
+            }
+            subscriptionSequences.put(subscription, sequence);
+            filtered = SubscriptionFilter.resequence(filtered, sequence);
+        }
+        SharedFrame frame;
+        if (filtered == null) {
+            frame = null;
+        } else if (filtered.equals(outbound.msg)) {
+            frame = outbound.frame;
+        } else {
+            frame = SharedFrame.encode(filtered);
+        }
+        filteredFrames.put(subscription, frame);
+        return frame;
+    }
+
+    /*
+     * Writes to the connections with queued frames that aren't already
+     * waiting for their socket to become writable.
+     */
+    private void writePending() {
+        for (Connection connection : new ArrayList<>(connections)) {
+            if (!connection.queue.isEmpty() &&
+                    (connection.key.interestOps() &
+                    SelectionKey.OP_WRITE) == 0) {
+                write(connection);
+            }
+        }
+    }
+
+    private void enqueue(Connection connection, SharedFrame frame) {
+        if (connection.queuedBytes + frame.length() > MAX_QUEUED_BYTES) {
+            conflate(connection);
+            return;
+        }
+        connection.queue.add(frame.retain().view());
+        connection.frames.add(frame);
+        connection.queuedBytes += frame.length();
+    }
+
+    /*
+     * Drops every queued frame, giving up the connection's references
+     */
+    private static void clearQueue(Connection connection) {
+        SharedFrame frame;
+        while ((frame = connection.frames.poll()) != null) {
+            frame.release();
+        }
+        connection.queue.clear();
+        connection.queuedBytes = 0;
+    }
+
+    /*
+     * Replaces the updates queued for a connection by a snapshot.  A frame
+     * which has been partly written is kept, so that the remote display
+     * doesn't see half a line.
+     */
+    private void conflate(Connection connection) {
+        ByteBuffer head = connection.queue.peek();
+        if (head != null && head.position() > 0) {
+            SharedFrame headFrame = connection.frames.poll();
+            connection.queue.poll();
+            clearQueue(connection);
+            connection.queue.add(head);
+            connection.frames.add(headFrame);
+            connection.queuedBytes = head.remaining();
+        } else {
+            clearQueue(connection);
+        }
+        connection.conflations++;
+        if ((debugFlags & DebugFlags.instance().DEBUG_STATUS) != 0) {
+            LOGGER.log(Level.INFO,
+                    "Connection saturated, replacing {0} with a snapshot",
+                    connection.channel.socket().getRemoteSocketAddress());
+        }
+        requestSnapshot(connection);
+    }
+
+    /*
+     * Asks the JavaFX application thread for a snapshot for this
+     * connection alone.  Updates are not queued for it in the meantime.
+     */
+    private void requestSnapshot(Connection connection) {
+        connection.awaitingSnapshot = true;
+        onSnapshotNeeded(connection);
+    }
+
+    private void closeStalledConnections() {
+        long now = System.nanoTime();
+        for (Connection connection : new ArrayList<>(connections)) {
+            if (connection.stalledSince != 0 &&
+                    now - connection.stalledSince > STALL_TIMEOUT * 1000000L) {
+                LOGGER.log(Level.INFO,
+                        "Disconnecting {0}, stalled after {1} snapshot(s)",
+                        new Object[]{connection.channel.socket()
+                                .getRemoteSocketAddress(),
+                                connection.conflations});
+                close(connection);
+            }
+        }
+    }
+
+    /*
+     * Queues a ping for every connection, and reports the round-trip
+     * times measured since the previous one.
+     */
+    private void heartbeat() {
+        long now = System.nanoTime();
+        if (heartbeatInterval <= 0 || now - lastHeartbeat < heartbeatInterval) {
+            return;
+        }
+        lastHeartbeat = now;
+        long min = -1;
+        long max = -1;
+        long total = 0;
+        int measured = 0;
+        int lagging = 0;
+        for (Connection connection : connections) {
+            if (connection.rttNanos < 0) {
+                continue;
+            }
+            if (now - connection.lastSeen >
+                    MISSED_PINGS_LAGGING * heartbeatInterval) {
+                lagging++;
+                continue;
+            }
+            min = (measured == 0) ? connection.rttNanos :
+                    Math.min(min, connection.rttNanos);
+            max = Math.max(max, connection.rttNanos);
+            total += connection.rttNanos;
+            measured++;
+        }
+        onLatencyChanged(min, measured > 0 ? total / measured : -1, max,
+                lagging);
+        if (connections.isEmpty()) {
+            return;
+        }
+        SharedFrame ping = SharedFrame.encode(
+                BinarySpec.heartbeatStr(BinarySpec.TYPE_PING, now));
+        for (Connection connection : connections) {
+            if (!connection.awaitingSnapshot) {
+                enqueue(connection, ping);
+            }
+        }
+        ping.release();
+        writePending();
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Connection connection = new Connection(channel, key);
+            key.attach(connection);
+            connections.add(connection);
+            if ((debugFlags & DebugFlags.instance().DEBUG_STATUS) != 0) {
+                LOGGER.log(Level.INFO, "Accepted connection from {0}",
+                        channel.getRemoteAddress());
+            }
+            listenersChanged();
+            requestSnapshot(connection);
+        } catch (IOException e) {
+            LOGGER.info(Utils.ExceptionStackTraceAsString(e));
+        }
+    }
+
+    /*
+     * Remote displays only send pongs, time requests and subscribe frames,
+     * reads are otherwise used to find out when they go away.
+     */
+    private void read(Connection connection) {
+        try {
+            readBuffer.clear();
+            if (connection.channel.read(readBuffer) < 0) {
+                close(connection);
+                return;
+            }
+            long now = System.nanoTime();
+            connection.lastSeen = now;
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                char c = (char) (readBuffer.get() & 0xFF);
+                if (c == '\n') {
+                    readLine(connection, connection.lineBuf.toString().trim(),
+                            now);
+                    connection.lineBuf.setLength(0);
+                } else if (connection.lineBuf.length() < MAX_LINE_CHARS) {
+                    connection.lineBuf.append(c);
+                }
+            }
+        } catch (IOException e) {
+            close(connection);
+        }
+    }
+
+    private void readLine(Connection connection, String line, long now) {
+        if (BinarySpec.isHeartbeat(line, BinarySpec.TYPE_PONG)) {
+            connection.rttNanos = now - BinarySpec.getTimestamp(line);
+        } else if (BinarySpec.isHeartbeat(line,
+                BinarySpec.TYPE_TIME_REQUEST)) {
+            SharedFrame reply = SharedFrame.encode(BinarySpec.timeReplyStr(
+                    BinarySpec.getTimestamp(line), now));
+            enqueue(connection, reply);
+            reply.release();
+            writePending();
+        } else if (BinarySpec.isFrame(line)) {
+            try {
+                if (BinarySpec.getType(line) == BinarySpec.TYPE_SUBSCRIBE &&
+                        (line.length() - BinarySpec.HEADER_CHARS) %
+                        BinarySpec.RECORD_CHARS == 0) {
+                    subscribe(connection, line);
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.info(Utils.ExceptionStackTraceAsString(e));
+            }
+        }
+    }
+
+    /*
+     * Replaces the subscription of a connection with the variables named
+     * by a subscribe frame.  A display whose subscription changes is sent
+     * a fresh snapshot, as it hasn't been sent the values of any added
+     * variables so far, and its messages are numbered anew.
+     */
+    private void subscribe(Connection connection, String frame) {
+        int numberOfVariables = XMLSpec.UpdateVariableNames.size();
+        BitSet subscription = new BitSet(numberOfVariables);
+        int recordCount = BinarySpec.getRecordCount(frame);
+        for (int i = 0; i < recordCount; i++) {
+            int id = BinarySpec.getRecordId(frame, i);
+            if (id < numberOfVariables) {
+                subscription.set(id);
+            }
+        }
+        BitSet previous = connection.subscription;
+        connection.subscription = subscription;
+        if (previous != null) {
+            forgetSubscription(previous);
+        }
+        if (!subscription.equals(previous)) {
+            continueSequence(connection);
+        }
+        if ((debugFlags & DebugFlags.instance().DEBUG_STATUS) != 0) {
+            LOGGER.log(Level.INFO, "{0} subscribed to {1} variable(s)",
+                    new Object[]{connection.channel.socket()
+                            .getRemoteSocketAddress(),
+                            subscription.cardinality()});
+        }
+        if (!subscription.equals(previous) && !connection.awaitingSnapshot) {
+            requestSnapshot(connection);
+        }
+    }
+
+    /*
+     * Makes sure the sequence of the subscription connection just moved to
+     * isn't behind the number last sent to it, as the display would drop
+     * its snapshot as a stale message.  A subscription shared with other
+     * displays then jumps ahead, so they are sent a snapshot too, rather
+     * than take the jump for lost messages.
+     */
+    private void continueSequence(Connection connection) {
+        if (!connection.sequenced) {
+            return;
+        }
+        BitSet subscription = connection.subscription;
+        Integer sequence = subscriptionSequences.get(subscription);
+        if (sequence != null && sequence - connection.lastSequence >= 0) {
+            return;
+        }
+        if (sequence != null) {
+            for (Connection other : connections) {
+                if (other != connection && !other.awaitingSnapshot &&
+                        subscription.equals(other.subscription)) {
+                    requestSnapshot(other);
+                }
+            }
+        }
+        subscriptionSequences.put(subscription, connection.lastSequence);
+    }
+
+    /*
+     * Drops the sequence of a subscription no connection uses anymore
+     */
+    private void forgetSubscription(BitSet subscription) {
+        for (Connection connection : connections) {
+            if (subscription.equals(connection.subscription)) {
+                return;
+            }
+        }
+        subscriptionSequences.remove(subscription);
+    }
+
+    /*
+     * Writes queued frames until the queue is empty or the socket won't
+     * take any more, in which case the selector is asked to report when
+     * it becomes writable again.
+     */
+    private void write(Connection connection) {
+        try {
+            boolean progressed = false;
+            while (!connection.queue.isEmpty()) {
+                ByteBuffer frame = connection.queue.peek();
+                int written = connection.channel.write(frame);
+                connection.queuedBytes -= written;
+                progressed |= (written > 0);
+                if (frame.hasRemaining()) {
+                    /*
+                     * A slow display still taking data is not stalled
+                     */
+                    if (progressed || connection.stalledSince == 0) {
+                        connection.stalledSince = System.nanoTime();
+                    }
+                    connection.key.interestOps(
+                            SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.queue.poll();
+                connection.frames.poll().release();
+            }
+            connection.stalledSince = 0;
+            connection.key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            close(connection);
+        }
+    }
+
+    private void close(Connection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        if (connection.subscription != null) {
+            forgetSubscription(connection.subscription);
+        }
+        connection.key.cancel();
+        clearQueue(connection);
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            LOGGER.info(Utils.ExceptionStackTraceAsString(e));
+        }
+        if ((debugFlags & DebugFlags.instance().DEBUG_STATUS) != 0) {
+            LOGGER.info("Connection closed");
+        }
+        listenersChanged();
+    }
+
+    private void listenersChanged() {
+        numberOfListeners = connections.size();
+        onListenersChanged(numberOfListeners);
+    }
+}
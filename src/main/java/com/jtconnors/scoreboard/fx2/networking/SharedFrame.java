@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.networking;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * An update message encoded once, as a newline terminated line of text,
+ * into a direct ByteBuffer shared read-only by every connection it is
+ * sent to (see SelectorSocketWriter).
+ *
+ * Frames are reference counted: encode() returns a frame holding one
+ * reference, each connection queueing it takes another with retain(), and
+ * every holder calls release() once done with it.  When the last
+ * reference is released, the buffer goes back to a pool, so that the
+ * master doesn't allocate a buffer per update.  Messages too large for a
+ * pooled buffer get a buffer of their own, which is left to the garbage
+ * collector.
+ *
+ * retain() and release() may be called from any thread.
+ */
+public class SharedFrame {
+
+    private static final int POOLED_CAPACITY = 4096;
+    private static final int MAX_POOLED = 256;
+
+    private static final ConcurrentLinkedQueue<SharedFrame> POOL =
+            new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooledCount = new AtomicInteger();
+
+    private final ByteBuffer buffer;
+    private final AtomicInteger refCount = new AtomicInteger();
+
+    private SharedFrame(int capacity) {
+        buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Encodes msg, followed by a newline, into a frame holding a single
+     * reference.  Update messages are ASCII, so each char is written as a
+     * byte without building an intermediate byte[]; anything else is
+     * encoded as UTF-8.
+     */
+    public static SharedFrame encode(String msg) {
+        int length = msg.length() + 1;
+        SharedFrame frame = acquire(length);
+        ByteBuffer buf = frame.buffer;
+        buf.clear();
+        for (int i = 0; i < msg.length(); i++) {
+            char c = msg.charAt(i);
+            if (c > 0x7F) {
+                frame.release();
+                return encodeUTF8(msg);
+            }
+            buf.put((byte) c);
+        }
+        buf.put((byte) '\n');
+        buf.flip();
+        return frame;
+    }
+
+    private static SharedFrame encodeUTF8(String msg) {
+        byte[] bytes = (msg + '\n').getBytes(StandardCharsets.UTF_8);
+        SharedFrame frame = acquire(bytes.length);
+        frame.buffer.clear();
+        frame.buffer.put(bytes);
+        frame.buffer.flip();
+        return frame;
+    }
+
+    private static SharedFrame acquire(int length) {
+        SharedFrame frame;
+        if (length <= POOLED_CAPACITY) {
+            frame = POOL.poll();
+            if (frame != null) {
+                pooledCount.decrementAndGet();
+            } else {
+                frame = new SharedFrame(POOLED_CAPACITY);
+            }
+        } else {
+            frame = new SharedFrame(length);
+        }
+        frame.refCount.set(1);
+        return frame;
+    }
+
+    /**
+     * Takes another reference to this frame
+     */
+    public SharedFrame retain() {
+        refCount.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * Gives up a reference to this frame.  The frame must not be used by
+     * the caller afterwards.
+     */
+    public void release() {
+        if (refCount.decrementAndGet() != 0 ||
+                buffer.capacity() != POOLED_CAPACITY) {
+            return;
+        }
+        if (pooledCount.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(this);
+        } else {
+            pooledCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns a read-only view of the encoded message, with a position of
+     * its own.  Only valid while a reference is held.
+     */
+    public ByteBuffer view() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the length in bytes of the encoded message
+     */
+    public int length() {
+        return buffer.limit();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.networking;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.animation.AnimationTimer;
+import com.jtconnors.scoreboard.common.XMLReaderInterface;
+import com.jtconnors.scoreboard.fx2.framework.SharedStateTable;
+import com.jtconnors.scoreboard.fx2.framework.TimeSync;
+
+/*
+ * Feeds a remote scoreboard running on the master's host from the
+ * master's SharedStateTable, in place of a socket, with
+ * -SharedStateFile:PATH.
+ *
+ * The table is polled once per pulse by an AnimationTimer: if the master
+ * wrote anything since the last pulse, the slots which changed are handed
+ * to the XMLReaderInterface, and flushUpdates() is called once, the same
+ * way InboundUpdateQueue hands over messages.  Polling only reads memory,
+ * there is no system call or parsing per update.
+ *
+ * The file is looked for every REOPEN_INTERVAL until the master creates
+ * it, and reopened if it has been replaced since.
+ */
+public class SharedStateReader {
+
+    private static final Logger LOGGER = Logger.getLogger(
+            SharedStateReader.class.getName());
+
+    /*
+     * Interval (nanoseconds) at which the file is checked
+     */
+    private static final long REOPEN_INTERVAL = 1000000000L;
+
+    private final XMLReaderInterface reader;
+    private final Path path;
+    private SharedStateTable table;
+    private Object fileKey;
+    private long lastCheck;
+    private int[] ids;
+    private int[] values;
+    private long[] times;
+
+    private final AnimationTimer pollTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            poll(now);
+        }
+    };
+
+    /*
+     * Must be constructed on the JavaFX application thread
+     */
+    public SharedStateReader(XMLReaderInterface reader, Path path) {
+        this.reader = reader;
+        this.path = path;
+        /*
+         * Times in the table are on this host's clock
+         */
+        TimeSync.instance().setSameClock();
+        checkFile();
+        lastCheck = System.nanoTime();
+        pollTimer.start();
+    }
+
+    private void poll(long now) {
+        if (now - lastCheck >= REOPEN_INTERVAL) {
+            lastCheck = now;
+            checkFile();
+        }
+        if (table == null) {
+            return;
+        }
+        int count = table.poll(ids, values, times);
+        for (int i = 0; i < count; i++) {
+            reader.handleUpdate(ids[i], values[i], times[i]);
+        }
+        if (count > 0) {
+            reader.flushUpdates();
+        }
+    }
+
+    /*
+     * Opens the table if it isn't open yet, or if the file has been
+     * replaced since it was opened.
+     */
+    private void checkFile() {
+        try {
+            Object key = Files.readAttributes(path,
+                    BasicFileAttributes.class).fileKey();
+            if (table != null && (key == null || key.equals(fileKey))) {
+                return;
+            }
+            table = SharedStateTable.open(path);
+            fileKey = key;
+            ids = new int[table.getSlotCount()];
+            values = new int[table.getSlotCount()];
+            times = new long[table.getSlotCount()];
+            LOGGER.log(Level.INFO, "Reading scoreboard state from {0}", path);
+        } catch (IOException e) {
+            /*
+             * The master hasn't created it yet, try again later
+             */
+            if (table == null) {
+                LOGGER.log(Level.FINE, e.toString());
+            }
+        }
+    }
+
+    public void stop() {
+        pollTimer.stop();
+    }
+}
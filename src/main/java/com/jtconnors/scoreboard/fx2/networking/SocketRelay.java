@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.networking;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.jtconnors.socket.DebugFlags;
+import com.jtconnors.scoreboard.common.Utils;
+import com.jtconnors.scoreboard.fx2.framework.BinarySpec;
+import com.jtconnors.scoreboard.fx2.framework.TimeSync;
+import com.jtconnors.scoreboard.fx2.framework.UpdateStateTable;
+import com.jtconnors.scoreboard.fx2.framework.XMLSpec;
+import com.jtconnors.scoreboard.fx2.framework.XMLUpdateScanner;
+
+/*
+ * A headless relay which connects to a master (or to another relay) like
+ * FxSocketReader does, and re-serves the update stream to its own remote
+ * scoreboards, allowing a fan-out tree of relays to be built so that the
+ * master's load doesn't grow with the number of displays.  See MainRelay.
+ *
+ * Messages are forwarded as they are, sequence numbers included, except
+ * for horn frames.  These hold a time on the master's clock, which the
+ * relay's remote displays can't tell as they synchronize with the relay,
+ * so the relay estimates the master's clock itself (see TimeSync) and
+ * forwards the horn with the corresponding time on its own clock.  The
+ * relay also keeps the last value of every update variable, from which it
+ * builds the snapshot sent to a remote display when it connects.  The
+ * snapshot is in the format of the last message read from upstream, and
+ * carries the sequence number of that message.  Like the master's, it is
+ * followed by clock frames restoring the state of the clocks, running
+ * clocks being counted down from their last clock run frame.  XML
+ * messages name their variables, so an XMLSpec implementation must have
+ * been initialized.
+ *
+ * No JavaFX classes are used; everything runs on two threads, one reading
+ * from upstream and the selector thread of the SelectorSocketWriter.
+ */
+public class SocketRelay extends SelectorSocketWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(
+            SocketRelay.class.getName());
+
+    private final String host;
+    private final int port;
+    private volatile boolean running = true;
+    private volatile Socket upstream;
+    private Thread selectorThread;
+
+    /*
+     * State of the upstream stream, guarded by this, which is also held
+     * while forwarding a message so that a snapshot is never queued
+     * behind a message it already includes.
+     */
+    private final UpdateStateTable stateTable = new UpdateStateTable();
+    private final XMLUpdateScanner updateScanner = new XMLUpdateScanner();
+    private int[] ids = new int[0];
+    private int[] values = new int[0];
+    private int lastSequence = 0;
+    private boolean binary = false;
+
+    /*
+     * IDs of the clocks read in clock run or clock stop frames, of those
+     * of them which are running, and the value and time (System.nanoTime())
+     * of each running clock's last clock run frame.
+     */
+    private final BitSet clocks = new BitSet();
+    private final BitSet runningClocks = new BitSet();
+    private int[] runValues = new int[0];
+    private long[] runTimes = new long[0];
+
+    public SocketRelay(String host, int port, int listenerPort,
+            int debugFlags) {
+        super(listenerPort, debugFlags);
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Starts serving remote displays and reading from upstream
+     */
+    public void start() {
+        selectorThread = NetworkThreads.start(this, "SocketRelay-selector");
+        NetworkThreads.start(this::readUpstream, "SocketRelay-upstream");
+    }
+
+    /**
+     * Waits for the relay to shut down.  The relay's threads may be
+     * daemon threads (see NetworkThreads), so a launcher must call this
+     * to keep the JVM running.
+     */
+    public void join() throws InterruptedException {
+        selectorThread.join();
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        Socket socket = upstream;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOGGER.info(Utils.ExceptionStackTraceAsString(e));
+            }
+        }
+        super.shutdown();
+    }
+
+    @Override
+    protected synchronized void onSnapshotNeeded(Connection connection) {
+        sendSnapshot(connection, snapshotStr(), clockStrs());
+    }
+
+    @Override
+    protected void onLatencyChanged(long minNanos, long avgNanos,
+            long maxNanos, int lagging) {
+        if ((getDebugFlags() & DebugFlags.instance().DEBUG_STATUS) != 0 &&
+                avgNanos >= 0) {
+            LOGGER.log(Level.INFO,
+                    "Latency min/avg/max {0}/{1}/{2} ms, {3} lagging",
+                    new Object[]{minNanos / 1000000, avgNanos / 1000000,
+                            maxNanos / 1000000, lagging});
+        }
+    }
+
+    @Override
+    protected void onListenersChanged(int numberOfListeners) {
+        if ((getDebugFlags() & DebugFlags.instance().DEBUG_STATUS) != 0) {
+            LOGGER.log(Level.INFO, "Relaying to {0} remote display(s)",
+                    numberOfListeners);
+        }
+    }
+
+    /*
+     * Reads messages from upstream until shutdown(), reconnecting with
+     * the same backoff as FxSocketReader whenever the connection drops.
+     */
+    private void readUpstream() {
+        int attempts = 0;
+        while (running) {
+            try (Socket socket = new Socket()) {
+                upstream = socket;
+                socket.connect(new InetSocketAddress(host, port));
+                LOGGER.log(Level.INFO, "Connected to {0} at port {1}",
+                        new Object[]{host, port});
+                attempts = 0;
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.UTF_8));
+                OutputStream out = socket.getOutputStream();
+                TimeSync.instance().reset();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    long now = System.nanoTime();
+                    if (BinarySpec.isHeartbeat(line, BinarySpec.TYPE_PING)) {
+                        out.write((BinarySpec.heartbeatStr(
+                                BinarySpec.TYPE_PONG,
+                                BinarySpec.getTimestamp(line)) + '\n' +
+                                BinarySpec.heartbeatStr(
+                                BinarySpec.TYPE_TIME_REQUEST,
+                                System.nanoTime()) + '\n')
+                                .getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    } else if (BinarySpec.isTimeReply(line)) {
+                        TimeSync.instance().addSample(
+                                BinarySpec.getTimestamp(line),
+                                BinarySpec.getReplyTimestamp(line), now);
+                    } else if (BinarySpec.isHornAt(line)) {
+                        relayHorn(line);
+                    } else {
+                        relay(line);
+                    }
+                }
+            } catch (IOException e) {
+                if ((getDebugFlags() &
+                        DebugFlags.instance().DEBUG_EXCEPTIONS) != 0) {
+                    LOGGER.info(e.toString());
+                }
+            }
+            if (!running) {
+                break;
+            }
+            long delay = FxSocketReader.computeReconnectDelay(attempts++);
+            if ((getDebugFlags() & DebugFlags.instance().DEBUG_STATUS) != 0) {
+                LOGGER.log(Level.INFO, "Reconnecting in {0} ms", delay);
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    /*
+     * Records the values carried by msg, then forwards it downstream
+     */
+    private synchronized void relay(String msg) {
+        try {
+            if (BinarySpec.isFrame(msg)) {
+                binary = true;
+                lastSequence = BinarySpec.getSequence(msg);
+                int type = BinarySpec.getType(msg);
+                for (int i = 0; i < BinarySpec.getRecordCount(msg); i++) {
+                    record(BinarySpec.getRecordId(msg, i),
+                            BinarySpec.getRecordValue(msg, i));
+                    if (type == BinarySpec.TYPE_CLOCK_RUN ||
+                            type == BinarySpec.TYPE_CLOCK_STOP) {
+                        recordClock(BinarySpec.getRecordId(msg, i),
+                                BinarySpec.getRecordValue(msg, i),
+                                type == BinarySpec.TYPE_CLOCK_RUN);
+                    }
+                }
+            } else if (updateScanner.scan(msg)) {
+                binary = false;
+                if (updateScanner.hasSequence()) {
+                    lastSequence = updateScanner.getSequence();
+                }
+                for (int i = 0; i < updateScanner.getCount(); i++) {
+                    record(updateScanner.getId(i), updateScanner.getValue(i));
+                }
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.info(e.toString());
+        }
+        postUpdate(msg);
+    }
+
+    /*
+     * Forwards a horn frame with its time converted to the relay's clock,
+     * or the current time if the master's clock isn't known yet.
+     */
+    private synchronized void relayHorn(String msg) {
+        try {
+            long masterTime = BinarySpec.getHornTimestamp(msg);
+            long localTime = TimeSync.instance().isSynchronized() ?
+                    TimeSync.instance().toLocalTime(masterTime) :
+                    System.nanoTime();
+            lastSequence = BinarySpec.getSequence(msg);
+            postUpdate(BinarySpec.hornAtStr(lastSequence,
+                    BinarySpec.getRecordId(msg, 0),
+                    BinarySpec.getRecordValue(msg, 0), localTime));
+        } catch (NumberFormatException e) {
+            LOGGER.info(e.toString());
+        }
+    }
+
+    private void record(int id, int value) {
+        if (id >= 0 && !XMLSpec.isEventVariable(id)) {
+            stateTable.set(id, value);
+        }
+    }
+
+    private void recordClock(int id, int value, boolean running) {
+        if (id < 0) {
+            return;
+        }
+        if (id >= runValues.length) {
+            runValues = Arrays.copyOf(runValues, id + 1);
+            runTimes = Arrays.copyOf(runTimes, id + 1);
+        }
+        clocks.set(id);
+        runningClocks.set(id, running);
+        runValues[id] = value;
+        runTimes[id] = System.nanoTime();
+    }
+
+    /*
+     * Builds the clock run and clock stop frames which follow a snapshot
+     * (see UpdateBatcher.snapshotClockStrs()).  Clocks count down in
+     * tenths of seconds.
+     */
+    private List<String> clockStrs() {
+        List<String> clockStrs = new ArrayList<>(2);
+        if (!binary) {
+            return clockStrs;
+        }
+        long now = System.nanoTime();
+        BitSet stoppedClocks = (BitSet) clocks.clone();
+        stoppedClocks.andNot(runningClocks);
+        for (BitSet clockIds : new BitSet[] {runningClocks, stoppedClocks}) {
+            int count = clockIds.cardinality();
+            if (count == 0) {
+                continue;
+            }
+            int[] clockValues = new int[count];
+            int[] ids = new int[count];
+            int i = 0;
+            for (int id = clockIds.nextSetBit(0); id >= 0;
+                    id = clockIds.nextSetBit(id + 1)) {
+                ids[i] = id;
+                clockValues[i] = (clockIds == runningClocks) ?
+                        (int) Math.max(0, runValues[id] -
+                                (now - runTimes[id]) / 100000000L) :
+                        runValues[id];
+                i++;
+            }
+            clockStrs.add(BinarySpec.frameStr(clockIds == runningClocks ?
+                    BinarySpec.TYPE_CLOCK_RUN : BinarySpec.TYPE_CLOCK_STOP,
+                    lastSequence, ids, clockValues, count));
+        }
+        return clockStrs;
+    }
+
+    /*
+     * Builds a snapshot of the recorded state, or returns null if nothing
+     * has been recorded yet.
+     */
+    private String snapshotStr() {
+        int count = stateTable.getKnownCount();
+        if (count == 0) {
+            return null;
+        }
+        if (ids.length < count) {
+            ids = new int[count];
+            values = new int[count];
+        }
+        stateTable.copyTo(ids, values);
+        if (binary) {
+            return BinarySpec.frameStr(BinarySpec.TYPE_SNAPSHOT, lastSequence,
+                    ids, values, count);
+        }
+        StringBuilder sb = new StringBuilder();
+        XMLSpec.appendStartTag(sb, XMLSpec.TAG_SNAPSHOT, lastSequence);
+        for (int i = 0; i < count; i++) {
+            XMLSpec.appendUpdate(sb, XMLSpec.getUpdateVariableName(ids[i]),
+                    values[i]);
+        }
+        sb.append(XMLSpec.END_SNAPSHOT);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2019, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.scoreboard.fx2.networking;
+
+import java.util.BitSet;
+import com.jtconnors.scoreboard.fx2.framework.BinarySpec;
+import com.jtconnors.scoreboard.fx2.framework.XMLSpec;
+
+/*
+ * Trims update messages down to the variables a remote display has
+ * subscribed to (see BinarySpec.TYPE_SUBSCRIBE).
+ *
+ * Messages are filtered as text, without decoding values: binary frames
+ * are made up of fixed size records, and XML messages of <update>
+ * elements, which are either kept whole or dropped.  A message left with
+ * no updates isn't sent at all, unless it is a snapshot.  So that the
+ * display doesn't mistake the dropped messages for lost ones, the
+ * messages sent for a subscription are renumbered with a sequence of
+ * their own (see resequence()).
+ *
+ * Stateless and thread safe, as XMLSpec's name index is only written
+ * while the scoreboard is initialized.
+ */
+public class SubscriptionFilter {
+
+    private static final String SEQ_VALUE_PREFIX = XMLSpec.ATTR_SEQ + "=\"";
+
+    private SubscriptionFilter() {}
+
+    /**
+     * Returns msg holding only the variables in subscription, or null if
+     * nothing is left to send.  Messages other than updates, snapshots
+     * and clock frames are returned as is.  The sequence number is left
+     * untouched.
+     */
+    public static String filter(String msg, BitSet subscription) {
+        if (BinarySpec.isFrame(msg)) {
+            return filterFrame(msg, subscription);
+        }
+        return filterXML(msg, subscription);
+    }
+
+    private static String filterFrame(String msg, BitSet subscription) {
+        int type;
+        try {
+            type = BinarySpec.getType(msg);
+        } catch (NumberFormatException e) {
+            return msg;
+        }
+        if (type != BinarySpec.TYPE_UPDATE &&
+                type != BinarySpec.TYPE_SNAPSHOT &&
+                type != BinarySpec.TYPE_CLOCK_RUN &&
+                type != BinarySpec.TYPE_CLOCK_STOP) {
+            return msg;
+        }
+        int recordCount = BinarySpec.getRecordCount(msg);
+        StringBuilder sb = new StringBuilder(msg.length());
+        sb.append(msg, 0, BinarySpec.HEADER_CHARS);
+        int kept = 0;
+        for (int i = 0; i < recordCount; i++) {
+            if (isSubscribed(BinarySpec.getRecordId(msg, i), subscription)) {
+                int pos = BinarySpec.HEADER_CHARS +
+                        (i * BinarySpec.RECORD_CHARS);
+                sb.append(msg, pos, pos + BinarySpec.RECORD_CHARS);
+                kept++;
+            }
+        }
+        if (kept == 0 && type != BinarySpec.TYPE_SNAPSHOT) {
+            return null;
+        }
+        return (kept == recordCount) ? msg : sb.toString();
+    }
+
+    private static String filterXML(String msg, BitSet subscription) {
+        int first = msg.indexOf(XMLSpec.START_UPDATE);
+        if (first < 0) {
+            return msg;
+        }
+        StringBuilder sb = new StringBuilder(msg.length());
+        sb.append(msg, 0, first);
+        int pos = first;
+        int kept = 0;
+        int start;
+        while ((start = msg.indexOf(XMLSpec.START_UPDATE, pos)) >= 0) {
+            int end = msg.indexOf(XMLSpec.END_UPDATE, start);
+            if (end < 0) {
+                return msg;
+            }
+            end += XMLSpec.END_UPDATE.length();
+            int nameStart = msg.indexOf(XMLSpec.START_NAME, start);
+            int nameEnd = msg.indexOf(XMLSpec.END_NAME, start);
+            if (nameStart < 0 || nameEnd < 0 || nameEnd > end) {
+                return msg;
+            }
+            String name = msg.substring(
+                    nameStart + XMLSpec.START_NAME.length(), nameEnd).trim();
+            int id = XMLSpec.getUpdateVariableId(name);
+            if (id < 0 || isSubscribed(id, subscription)) {
+                sb.append(msg, start, end);
+                kept++;
+            }
+            pos = end;
+        }
+        sb.append(msg, pos, msg.length());
+        if (kept == 0 && msg.indexOf(XMLSpec.END_SNAPSHOT) < 0) {
+            return null;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Determines if msg carries a sequence number: binary updates,
+     * snapshots, clock and horn frames, and XML messages with a seq
+     * attribute.
+     */
+    public static boolean isSequenced(String msg) {
+        if (BinarySpec.isFrame(msg)) {
+            int type;
+            try {
+                type = BinarySpec.getType(msg);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            return type == BinarySpec.TYPE_UPDATE ||
+                    type == BinarySpec.TYPE_SNAPSHOT ||
+                    type == BinarySpec.TYPE_CLOCK_RUN ||
+                    type == BinarySpec.TYPE_CLOCK_STOP ||
+                    type == BinarySpec.TYPE_HORN_AT;
+        }
+        return seqValueStart(msg) >= 0;
+    }
+
+    /**
+     * Returns the sequence number of msg, which must carry one (see
+     * isSequenced()).
+     */
+    public static int getSequence(String msg) {
+        if (BinarySpec.isFrame(msg)) {
+            return BinarySpec.getSequence(msg);
+        }
+        int start = seqValueStart(msg);
+        return Integer.parseInt(msg, start, msg.indexOf('"', start), 10);
+    }
+
+    /**
+     * Returns a copy of msg, which must carry a sequence number (see
+     * isSequenced()), with the given sequence number.
+     */
+    public static String resequence(String msg, int sequence) {
+        if (BinarySpec.isFrame(msg)) {
+            return BinarySpec.withSequence(msg, sequence);
+        }
+        int start = seqValueStart(msg);
+        int end = msg.indexOf('"', start);
+        return msg.substring(0, start) + sequence + msg.substring(end);
+    }
+
+    /*
+     * Returns the index of the value of the seq attribute of the first
+     * tag of an XML message, or -1 if it has none.
+     */
+    private static int seqValueStart(String msg) {
+        int tagEnd = msg.indexOf('>');
+        int attr = msg.indexOf(SEQ_VALUE_PREFIX);
+        if (attr < 0 || tagEnd < attr) {
+            return -1;
+        }
+        return attr + SEQ_VALUE_PREFIX.length();
+    }
+
+    /*
+     * Events, like the horn, are always sent
+     */
+    private static boolean isSubscribed(int id, BitSet subscription) {
+        return subscription.get(id) || XMLSpec.isEventVariable(id);
+    }
+}
@@ -11,6 +11,7 @@ module scoreboard {
     requires javafx.controls;
     requires javafx.graphics;
     requires javafx.media;
+    requires jdk.httpserver;
     requires jdk.jsobject;
     exports com.jtconnors.scoreboard.fx2;
     /*